@@ -24,7 +24,7 @@ import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.MultiRule;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
-import org.rascalmpl.eclipse.editor.MessagesToMarkers;
+import org.rascalmpl.eclipse.editor.MessagesTo.MessageIndex;
 import org.rascalmpl.eclipse.editor.RascalLanguageServices;
 import org.rascalmpl.eclipse.preferences.RascalPreferences;
 import org.rascalmpl.eclipse.util.ProjectPathConfig;
@@ -37,7 +37,6 @@ import org.rascalmpl.uri.URIResourceResolver;
 import org.rascalmpl.uri.URIUtil;
 import org.rascalmpl.values.ValueFactoryFactory;
 
-import io.usethesource.impulse.builder.MarkerCreator;
 import io.usethesource.vallang.IConstructor;
 import io.usethesource.vallang.IList;
 import io.usethesource.vallang.IListWriter;
@@ -196,7 +195,9 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
 	                IList programs = compileAll(monitor, src, pathConfig);
 
 	                if (programs != null) {
-	                	markErrors(programs);
+	                	ModuleMarkerUpdater markers = new ModuleMarkerUpdater();
+	                	markErrors(programs, markers);
+	                	markers.apply(monitor);
 	                }
 	            }
 	        }
@@ -249,10 +250,6 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
 	        return getLocation() != null;
 	    }
 
-        public void deleteMarkers() throws CoreException {
-            file.deleteMarkers(IRascalResources.ID_RASCAL_MARKER, true, IFile.DEPTH_ZERO);
-        }
-
         public void clearUseDefCache() {
             RascalLanguageServices.getInstance().clearSummaryCache(getLocation());
         }
@@ -394,7 +391,6 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
     private void buildDirty(List<ModuleWork> todo, IProgressMonitor monitor) {
         try {
             initializeParameters(false);
-            cleanChangedModulesMarkers(todo, monitor);
             buildChangedModules(todo, monitor);
             cleanChangedModulesUseDefCache(todo, monitor);
             preloadSummaries(todo, monitor);
@@ -420,19 +416,28 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
         Activator.log("Incremental build uses pathConfig: " + pathConfig, null);
         
         IList locs = getModuleLocations(todo);
+        ModuleMarkerUpdater markers = new ModuleMarkerUpdater();
+        
+        // the old markers of every changed module are replaced, also if the compiler has nothing to say about it
+        for (ModuleWork mod : todo) {
+            markers.expect(mod.file);
+        }
         
         try {
             if (!locs.isEmpty()) {
                 IList results = compileAll(monitor, locs, pathConfig);
 
                 if (results != null) {
-                    markErrors(results);
+                    markErrors(results, markers);
                 }
             }
         } 
         catch (Throwable e) {
             Activator.log("Unexpected error during compilation:" + e.getMessage(), e instanceof ExecutionException ? ((ExecutionException)e).getCause() : e);
         }
+        finally {
+            markers.apply(monitor);
+        }
     }
 
     private IList getModuleLocations(List<ModuleWork> todo) {
@@ -445,14 +450,6 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
         return w.done();
     }
 
-    private void cleanChangedModulesMarkers(List<ModuleWork> todo, IProgressMonitor monitor) throws CoreException {
-        monitor.beginTask("Cleaning old errors", todo.size());
-        for (ModuleWork mod : todo) {
-            mod.deleteMarkers();
-        }
-        monitor.worked(todo.size());
-    }
-    
     private void cleanChangedModulesUseDefCache(List<ModuleWork> todo, IProgressMonitor monitor) throws CoreException {
         monitor.beginTask("Cleaning use-def cache", todo.size());
         for (ModuleWork mod : todo) {
@@ -461,7 +458,7 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
         monitor.worked(todo.size());
     }
 
-    private void markErrors(IList programs) throws MalformedURLException, IOException {
+    private void markErrors(IList programs, ModuleMarkerUpdater markers) throws MalformedURLException, IOException {
         for (IValue iprogram : programs){
             IConstructor program = (IConstructor) iprogram;
             
@@ -473,11 +470,11 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
                Activator.log("could not get src for errors", new IllegalArgumentException()); 
             }
             
-            markErrors((ISourceLocation) program.get("src"), program);
+            markErrors((ISourceLocation) program.get("src"), program, markers);
         }
     }
     
-    private void markErrors(ISourceLocation loc, IConstructor result) throws MalformedURLException, IOException {
+    private void markErrors(ISourceLocation loc, IConstructor result, ModuleMarkerUpdater markers) throws MalformedURLException, IOException {
         if (!("project".equals(loc.getScheme()))) {
             // ignoring errors outside of projects or synthetic Container module generated by compiler
             return;
@@ -491,8 +488,7 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
             Activator.log("Unexpected Rascal compiler result: " + result, new IllegalArgumentException());
         }
         
-        new MessagesToMarkers().process(loc, (ISet) result.get("messages"), 
-                new MarkerCreator(new ProjectURIResolver().resolveFile(loc), IRascalResources.ID_RASCAL_MARKER));
+        markers.put(new ProjectURIResolver().resolveFile(loc), MessageIndex.of((ISet) result.get("messages")).getMessages(loc));
     }
 
     private void initializeParameters(boolean force) throws CoreException {
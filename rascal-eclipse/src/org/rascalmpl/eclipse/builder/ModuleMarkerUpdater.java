@@ -0,0 +1,204 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.rascalmpl.eclipse.IRascalResources;
+import org.rascalmpl.eclipse.editor.MessagesTo;
+import org.rascalmpl.eclipse.editor.MessagesToMarkers;
+
+import io.usethesource.impulse.builder.MarkerCreator;
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.ISourceLocation;
+
+/**
+ * Brings the compiler markers of a set of modules in line with the messages of the latest
+ * compilation, in a single workspace operation. Markers that are already there are left alone,
+ * markers that only changed severity are updated and only the rest is deleted or created, such that
+ * rebuilding an unchanged module does not touch its markers at all.
+ */
+class ModuleMarkerUpdater implements IWorkspaceRunnable {
+    private final MessagesTo messages = new MessagesToMarkers();
+    private final Map<IFile, List<Entry>> expected = new LinkedHashMap<>();
+
+    /**
+     * Declares that the markers of this file are managed by this update, such that
+     * its old markers are removed even if no messages are reported for it.
+     */
+    public void expect(IFile file) {
+        expected.computeIfAbsent(file, f -> new ArrayList<>());
+    }
+
+    public void put(IFile file, List<IConstructor> messageList) {
+        List<Entry> entries = expected.computeIfAbsent(file, f -> new ArrayList<>(messageList.size()));
+
+        for (IConstructor message : messageList) {
+            entries.add(new Entry(messages.getText(message), messages.getSeverity(message), (ISourceLocation) message.get(1), message));
+        }
+    }
+
+    public void apply(IProgressMonitor monitor) throws CoreException {
+        if (!expected.isEmpty()) {
+            ResourcesPlugin.getWorkspace().run(this, null, IWorkspace.AVOID_UPDATE, monitor);
+        }
+    }
+
+    @Override
+    public void run(IProgressMonitor monitor) throws CoreException {
+        for (Map.Entry<IFile, List<Entry>> file : expected.entrySet()) {
+            if (monitor != null && monitor.isCanceled()) {
+                return;
+            }
+
+            if (file.getKey().exists()) {
+                update(file.getKey(), file.getValue());
+            }
+        }
+    }
+
+    private void update(IFile file, List<Entry> entries) throws CoreException {
+        IMarker[] existing = file.findMarkers(IRascalResources.ID_RASCAL_MARKER, true, IResource.DEPTH_ZERO);
+
+        if (existing.length == 0 && entries.isEmpty()) {
+            return;
+        }
+
+        Map<Entry, LinkedList<IMarker>> old = new HashMap<>();
+        for (IMarker marker : existing) {
+            old.computeIfAbsent(Entry.of(marker), e -> new LinkedList<>()).add(marker);
+        }
+
+        List<Entry> missing = new ArrayList<>();
+        for (Entry entry : entries) {
+            LinkedList<IMarker> same = old.get(entry);
+
+            if (same != null && !same.isEmpty()) {
+                same.removeFirst();
+            }
+            else {
+                missing.add(entry);
+            }
+        }
+
+        // the leftovers are indexed by position, such that a marker that only changed severity is found at once
+        Map<Position, LinkedList<IMarker>> stale = new HashMap<>();
+        for (Map.Entry<Entry, LinkedList<IMarker>> markers : old.entrySet()) {
+            if (!markers.getValue().isEmpty()) {
+                stale.computeIfAbsent(markers.getKey().position, p -> new LinkedList<>()).addAll(markers.getValue());
+            }
+        }
+
+        MarkerCreator creator = null;
+        for (Entry entry : missing) {
+            LinkedList<IMarker> samePosition = stale.get(entry.position);
+
+            if (samePosition != null && !samePosition.isEmpty()) {
+                samePosition.removeFirst().setAttribute(IMarker.SEVERITY, entry.severity);
+            }
+            else {
+                if (creator == null) {
+                    creator = new MarkerCreator(file, IRascalResources.ID_RASCAL_MARKER);
+                }
+                messages.process(entry.source, creator);
+            }
+        }
+
+        for (List<IMarker> markers : stale.values()) {
+            for (IMarker marker : markers) {
+                marker.delete();
+            }
+        }
+    }
+
+    /**
+     * The part of the identity of a marker that does not change when only its severity does.
+     */
+    private static final class Position {
+        private final String message;
+        private final int start;
+        private final int end;
+
+        public Position(String message, int start, int end) {
+            this.message = message;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Position)) {
+                return false;
+            }
+
+            Position other = (Position) obj;
+            return start == other.start
+                && end == other.end
+                && message.equals(other.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(message, start, end);
+        }
+    }
+
+    /**
+     * The identity of a marker: its location, message and severity.
+     */
+    private static final class Entry {
+        private final Position position;
+        private final int severity;
+        /* the message this marker is created from, or null for existing markers */
+        private final IConstructor source;
+
+        public Entry(String message, int severity, int start, int end, IConstructor source) {
+            this.position = new Position(message, start, end);
+            this.severity = severity;
+            this.source = source;
+        }
+
+        public Entry(String message, int severity, ISourceLocation loc, IConstructor source) {
+            this(message, severity,
+                loc.hasOffsetLength() && loc.hasLineColumn() ? loc.getOffset() : 0,
+                loc.hasOffsetLength() && loc.hasLineColumn() ? loc.getOffset() + loc.getLength() : 0,
+                source);
+        }
+
+        public static Entry of(IMarker marker) {
+            return new Entry(
+                marker.getAttribute(IMarker.MESSAGE, ""),
+                marker.getAttribute(IMarker.SEVERITY, -1),
+                marker.getAttribute(IMarker.CHAR_START, 0),
+                marker.getAttribute(IMarker.CHAR_END, 0),
+                null);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+
+            Entry other = (Entry) obj;
+            return severity == other.severity && position.equals(other.position);
+        }
+
+        @Override
+        public int hashCode() {
+            return position.hashCode() * 31 + severity;
+        }
+    }
+}
@@ -27,16 +27,11 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IBreakpoint;
-import org.eclipse.debug.core.model.IThread;
 import org.eclipse.debug.core.model.LineBreakpoint;
-import org.rascalmpl.debug.IRascalEventListener;
-import org.rascalmpl.debug.RascalEvent;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.eclipse.debug.core.model.RascalDebugTarget;
-import org.rascalmpl.eclipse.debug.core.model.RascalThread;
 import org.rascalmpl.uri.URIUtil;
 import org.rascalmpl.values.ValueFactoryFactory;
 
@@ -48,7 +43,7 @@ import io.usethesource.vallang.IValueFactory;
  * 
  * TODO: create an own RascalLineBreakpoint class inheriting from this class.
  */
-public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IRascalEventListener {
+public class RascalSourceLocationBreakpoint extends LineBreakpoint {
 	
 	/**
 	 * Type of the marker.
@@ -76,6 +71,9 @@ public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IR
 
 	// resource associated with the marker
 	private IResource resource;
+	
+	// source location of the marker, derived from its attributes only when they change
+	private volatile ISourceLocation sourceLocation;
 
 	/**
 	 * Default constructor is required for the breakpoint manager
@@ -107,6 +105,7 @@ public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IR
 		
 		// initialize attributes
 		this.resource = resource;
+		this.sourceLocation = sourceLocation;
 		
 		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
 			public void run(IProgressMonitor monitor) throws CoreException {
@@ -155,6 +154,7 @@ public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IR
 		
 		// restore attributes for persisted breakpoints
 		resource = marker.getResource();
+		sourceLocation = null;
 	}
 		
 	/**
@@ -174,13 +174,13 @@ public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IR
      */
     public void install(RascalDebugTarget target) throws CoreException {
        	fTarget = target;
-    	target.addEventListener(this);
+    	target.registerBreakpoint(this);
     	createRequest(target);
     }
     
     /**
      * Removes this breakpoint from the given interpreter.
-     * Removes this breakpoint as an event listener and clears
+     * Removes this breakpoint from the breakpoint index of the target and clears
      * the request for the interpreter.
      * 
      * @param target Rascal interpreter
@@ -188,7 +188,7 @@ public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IR
      */
     public void remove(RascalDebugTarget target) throws CoreException {
     	clearRequest(target);
-    	target.removeEventListener(this);
+    	target.unregisterBreakpoint(this);
     	fTarget = null;
     }
 
@@ -235,16 +235,31 @@ public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IR
     /**
      * Returns the source location that is configured or <code>null</code>.
      * The source location is reconstructed from the display {@link IMarker} 
-     * and used to detect if a breakpoint was hit.
+     * once, and again after {@link #refreshSourceLocation()}, and used to 
+     * detect if a breakpoint was hit.
      * 
      * @return the source location that is configured or <code>null</code>.
      */
-	protected ISourceLocation getSourceLocation() {
-		try {
-			return markerToSourceLocation(getMarker());
-		} catch (CoreException e) {
-			return null;
+	public ISourceLocation getSourceLocation() {
+		ISourceLocation result = sourceLocation;
+		
+		if (result == null && getMarker() != null) {
+			try {
+				result = sourceLocation = markerToSourceLocation(getMarker());
+			} catch (CoreException e) {
+				return null;
+			}
 		}
+		
+		return result;
+	}
+	
+	/**
+	 * Forgets the cached source location, such that it is derived from the
+	 * marker again, for instance after the marker moved with an edit.
+	 */
+	public void refreshSourceLocation() {
+		sourceLocation = null;
 	}
     	
 	private static ISourceLocation markerToSourceLocation(IMarker marker) throws CoreException {
@@ -274,42 +289,5 @@ public class RascalSourceLocationBreakpoint extends LineBreakpoint implements IR
 	
 		return result;
 	}
-	   
-    /**
-     * Notify's the Rascal interpreter that this breakpoint has been hit.
-     */
-    private final void notifyThread() {
-    	if (fTarget != null) {
-			try {
-				IThread[] threads = fTarget.getThreads();
-				if (threads.length == 1) {
-	    			RascalThread thread = (RascalThread)threads[0];
-	    			thread.suspendedBy(this);
-	    		}
-			} catch (DebugException e) {
-			}    		
-    	}
-    }
-   
-	/**
-     * Determines if this breakpoint was hit and notifies the thread.
-     * 
-     * @param event breakpoint event
-     */
-    private void handleHit(RascalEvent event) {
-		ISourceLocation hitLocation = (ISourceLocation) event.getData();
-
-		if (hitLocation.equals(getSourceLocation())) {
-			notifyThread();
-		}
-    }
-    
-	@Override
-	public void handleRascalEvent(RascalEvent event) {
-		if (event.getKind() == RascalEvent.Kind.SUSPEND
-				&& event.getDetail() == RascalEvent.Detail.BREAKPOINT) {
-			handleHit(event);
-		}		
-	}
 
 }
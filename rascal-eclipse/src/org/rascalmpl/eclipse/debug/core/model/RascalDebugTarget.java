@@ -13,6 +13,10 @@
 *******************************************************************************/
 package org.rascalmpl.eclipse.debug.core.model;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.eclipse.core.resources.IMarkerDelta;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.debug.core.DebugException;
@@ -31,6 +35,8 @@ import org.rascalmpl.debug.IRascalEventTrigger;
 import org.rascalmpl.debug.IRascalRuntimeInspection;
 import org.rascalmpl.debug.RascalEvent;
 import org.rascalmpl.eclipse.debug.core.breakpoints.RascalSourceLocationBreakpoint;
+
+import io.usethesource.vallang.ISourceLocation;
 
 
 /**
@@ -56,6 +62,12 @@ public class RascalDebugTarget extends RascalDebugElement implements IDebugTarge
 	private RascalThread fThread;
 
     private final IRascalRuntimeInspection fEvaluator;
+    
+    // installed breakpoints by their source location, to find the breakpoints that were hit
+    private final Map<ISourceLocation, Set<RascalSourceLocationBreakpoint>> fBreakpointIndex = new ConcurrentHashMap<>();
+    
+    // the location each installed breakpoint is indexed by, which stays the same when its marker moves
+    private final Map<RascalSourceLocationBreakpoint, ISourceLocation> fBreakpointLocations = new ConcurrentHashMap<>();
 	
 
 	/**
@@ -294,16 +306,61 @@ public class RascalDebugTarget extends RascalDebugElement implements IDebugTarge
 	public void breakpointChanged(IBreakpoint breakpoint, IMarkerDelta delta) {
 		if (supportsBreakpoint(breakpoint)) {
 			try {
+				RascalSourceLocationBreakpoint rascalBreakpoint = (RascalSourceLocationBreakpoint) breakpoint;
+				
+				// the marker may have moved, so remove the request for the old location first
+				if (fBreakpointLocations.containsKey(rascalBreakpoint)) {
+					rascalBreakpoint.remove(this);
+				}
+				rascalBreakpoint.refreshSourceLocation();
+				
 				if (breakpoint.isEnabled() && getBreakpointManager().isEnabled()) {
 					breakpointAdded(breakpoint);
-				} else {
-					breakpointRemoved(breakpoint, null);
 				}
 			} catch (CoreException e) {
 			}
 		}
 	}	
 	
+	/**
+	 * Adds an installed breakpoint to the index of breakpoints by source location.
+	 * 
+	 * @param breakpoint the breakpoint that is installed in this target
+	 */
+	public void registerBreakpoint(RascalSourceLocationBreakpoint breakpoint) {
+		ISourceLocation loc = breakpoint.getSourceLocation();
+		if (loc != null) {
+			fBreakpointIndex.computeIfAbsent(loc, l -> ConcurrentHashMap.newKeySet()).add(breakpoint);
+			fBreakpointLocations.put(breakpoint, loc);
+		}
+	}
+	
+	/**
+	 * Removes a breakpoint from the index of breakpoints by source location.
+	 * 
+	 * @param breakpoint the breakpoint that is removed from this target
+	 */
+	public void unregisterBreakpoint(RascalSourceLocationBreakpoint breakpoint) {
+		ISourceLocation loc = fBreakpointLocations.remove(breakpoint);
+		if (loc != null) {
+			fBreakpointIndex.computeIfPresent(loc, (l, breakpoints) -> {
+				breakpoints.remove(breakpoint);
+				return breakpoints.isEmpty() ? null : breakpoints;
+			});
+		}
+	}
+	
+	/**
+	 * Returns the installed breakpoints at the given location.
+	 * 
+	 * @param hitLocation the location the runtime suspended at
+	 * @return the breakpoints that were hit, possibly none
+	 */
+	public IBreakpoint[] findBreakpoints(ISourceLocation hitLocation) {
+		Set<RascalSourceLocationBreakpoint> breakpoints = hitLocation != null ? fBreakpointIndex.get(hitLocation) : null;
+		return breakpoints != null ? breakpoints.toArray(new IBreakpoint[0]) : new IBreakpoint[0];
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.rascalmpl.eclipse.debug.core.model.RascalDebugElement#sendRequest(org.rascalmpl.interpreter.debug.IDebugMessage)
 	 */
@@ -0,0 +1,160 @@
+package org.rascalmpl.eclipse.debug.core.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IValue;
+import org.eclipse.debug.core.model.IVariable;
+import org.rascalmpl.debug.IRascalFrame;
+import org.rascalmpl.interpreter.result.IRascalResult;
+
+/**
+ *  Groups the global variables of a module that is imported by a stack frame. The
+ *  module is looked up, and its variables collected, only when the node is expanded.
+ */
+public class RascalModuleScope extends RascalDebugElement implements IVariable, IValue {
+	private final RascalStackFrame frame;
+	private final String module;
+	private IVariable[] variables = null;
+
+	protected RascalModuleScope(RascalStackFrame frame, String module) {
+		super(frame.getRascalDebugTarget());
+		this.frame = frame;
+		this.module = module;
+	}
+
+	private IRascalFrame getModule() {
+		return getRascalDebugTarget().getEvaluator().getModule(module);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValue#getVariables()
+	 */
+	public synchronized IVariable[] getVariables() throws DebugException {
+		if (variables == null) {
+			IRascalFrame env = getModule();
+
+			if (env == null) {
+				return variables = new IVariable[0];
+			}
+
+			List<String> names = new ArrayList<>(env.getFrameVariables());
+			Collections.sort(names);
+
+			IVariable[] result = new IVariable[names.size()];
+			for (int i = 0; i < result.length; i++) {
+				IRascalResult var = env.getFrameVariable(names.get(i));
+				result[i] = new RascalVariable(frame, names.get(i), var.getStaticType(), var.getValue());
+			}
+
+			variables = result;
+		}
+
+		return variables;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValue#hasVariables()
+	 */
+	public boolean hasVariables() throws DebugException {
+		if (variables != null) {
+			return variables.length > 0;
+		}
+
+		IRascalFrame env = getModule();
+		return env != null && !env.getFrameVariables().isEmpty();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getValue()
+	 */
+	public IValue getValue() throws DebugException {
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getName()
+	 */
+	public String getName() throws DebugException {
+		return module;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValue#getReferenceTypeName()
+	 */
+	public String getReferenceTypeName() throws DebugException {
+		return "module";
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValue#getValueString()
+	 */
+	public String getValueString() throws DebugException {
+		return "";
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValue#isAllocated()
+	 */
+	public boolean isAllocated() throws DebugException {
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof RascalModuleScope) {
+			return module.equals(((RascalModuleScope) obj).module);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return module.hashCode();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#hasValueChanged()
+	 */
+	public boolean hasValueChanged() throws DebugException {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValueModification#setValue(java.lang.String)
+	 */
+	public void setValue(String expression) throws DebugException {
+
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValueModification#setValue(org.eclipse.debug.core.model.IValue)
+	 */
+	public void setValue(IValue value) throws DebugException {
+
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValueModification#supportsValueModification()
+	 */
+	public boolean supportsValueModification() {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValueModification#verifyValue(java.lang.String)
+	 */
+	public boolean verifyValue(String expression) throws DebugException {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IValueModification#verifyValue(org.eclipse.debug.core.model.IValue)
+	 */
+	public boolean verifyValue(IValue value) throws DebugException {
+		return false;
+	}
+}
@@ -14,7 +14,6 @@
 package org.rascalmpl.eclipse.debug.core.model;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -47,7 +46,12 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 	 */
   private final IStackFrame parent;
 
-  private final IVariable[] variables;
+  /**
+   * The runtime frame, of which the variables are only collected when the frame is expanded
+   */
+  private final IRascalFrame environment;
+
+  private IVariable[] variables = null;
 
   private final String name; 
 
@@ -57,34 +61,28 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 		this.thread = thread;
 		/* need to clone to know previous state, in order to compute model deltas */ 
 		this.location = location;
-		this.variables = initVariables(environment);
+		this.environment = environment;
 		this.name = environment.getName();
 	}
 	
 	private IVariable[] initVariables(IRascalFrame environment) {
 	  //manage the list of variables local to the current module
     Set<String> keys = environment.getFrameVariables();
+    Set<String> imports = environment.getImports();
     List<String> vars = new ArrayList<>(keys.size());
     vars.addAll(keys);
     Collections.sort(vars);
 
-    ArrayList<IVariable> ivars = new ArrayList<>(vars.size() * 2);
+    ArrayList<IVariable> ivars = new ArrayList<>(vars.size() + imports.size());
 
     for (String v : vars) {
       IRascalResult var = environment.getFrameVariable(v);
       ivars.add(new RascalVariable(this, v, var.getStaticType(), var.getValue()));
     }
     
-    for (String s:environment.getImports()) {
-        IRascalFrame module = thread.getRascalDebugTarget().getEvaluator().getModule(s);
-        
-        if (module != null) {
-            Set<String> variables = module.getFrameVariables();
-            for (String v:variables) {
-                IRascalResult w = module.getFrameVariable(v);
-                ivars.add(new RascalVariable(this, s + "::" + v, w.getStaticType(), w.getValue()));
-            }
-        }
+    // the globals of imported modules are only collected when their node is expanded
+    for (String s : imports) {
+        ivars.add(new RascalModuleScope(this, s));
     }
     
     return ivars.toArray(new IVariable[ivars.size()]);
@@ -147,7 +145,10 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IStackFrame#getVariables()
 	 */
-	public IVariable[] getVariables() throws DebugException {
+	public synchronized IVariable[] getVariables() throws DebugException {
+		if (variables == null) {
+			variables = initVariables(environment);
+		}
 		return variables;
 	}
 
@@ -162,7 +163,7 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 	 * @see org.eclipse.debug.core.model.IStackFrame#hasVariables()
 	 */
 	public boolean hasVariables() throws DebugException {
-		return variables.length > 0;
+		return !environment.getFrameVariables().isEmpty() || !environment.getImports().isEmpty();
 	}
 
 	/* (non-Javadoc)
@@ -302,7 +303,7 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 			RascalStackFrame sf = (RascalStackFrame) obj;
 			
 			return obj == this 
-			    || (Arrays.equals(variables, sf.variables)
+			    || (name.equals(sf.name)
 			    && ((parent == null && sf.parent == null) || (parent != null && sf.parent != null && parent.equals(sf.parent))) 
 			    && thread == sf.thread
 			    && location.equals(sf.location)
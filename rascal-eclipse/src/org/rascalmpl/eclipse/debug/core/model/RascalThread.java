@@ -20,7 +20,6 @@ import static org.rascalmpl.debug.DebugMessageFactory.requestStepOver;
 import static org.rascalmpl.debug.DebugMessageFactory.requestSuspension;
 import static org.rascalmpl.debug.DebugMessageFactory.requestTermination;
 
-import java.util.Set;
 import java.util.Stack;
 
 import org.eclipse.debug.core.DebugEvent;
@@ -41,10 +40,21 @@ import io.usethesource.vallang.ISourceLocation;
  * A Rascal thread. Rascal programs are currently modelled single threaded.
  */
 public class RascalThread extends RascalDebugElement implements IThread, IRascalEventListener {
-	private IBreakpoint fBreakpoint = null;
+	private IBreakpoint[] fBreakpoints = new IBreakpoint[0];
 	private boolean fStepping = false;
 	private boolean fSuspended = false;
 	
+	/**
+	 * The stack frames of the current suspension, computed on the first request and
+	 * dropped on every event of the runtime, since the Debug view asks for them many times.
+	 */
+	private IStackFrame[] fFrames = null;
+	
+	/**
+	 * The rendered strings of the values of the current suspension.
+	 */
+	private final ValueStrings fValueStrings = new ValueStrings();
+	
 	public RascalThread(IDebugTarget target) {
 		super(target);
 		getRascalDebugTarget().addEventListener(this);
@@ -62,21 +72,21 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 
 	@Override
 	public IBreakpoint[] getBreakpoints() {
-		if (fBreakpoint == null) {
-			return new IBreakpoint[0];
-		}
-		return new IBreakpoint[]{fBreakpoint};
+		return fBreakpoints.clone();
 	}
 
 	@Override
-	public IStackFrame[] getStackFrames() throws DebugException {
+	public synchronized IStackFrame[] getStackFrames() throws DebugException {
 		if (isSuspended()) {
+			if (fFrames != null) {
+				return fFrames.clone();
+			}
+			
 			IRascalRuntimeInspection eval = getRascalDebugTarget().getEvaluator();
 			Stack<IRascalFrame> callStack = eval.getCurrentStack();
 			
 			int size = callStack.size();
-			Set<String> imports = callStack.get(size-1).getImports();
-			IStackFrame[] theFrames = new IStackFrame[callStack.size()+imports.size()];
+			IStackFrame[] theFrames = new IStackFrame[size];
 			// for the top, use the current AST location
 			ISourceLocation currentLoc = eval.getCurrentPointOfExecution() != null ? 
 			    eval.getCurrentPointOfExecution()
@@ -86,7 +96,8 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 				theFrames[i] = new RascalStackFrame(this, callStack.get(size-i-1), callStack.get(size-i).getCallerLocation(), theFrames[i-1]);
 			}
 			
-			return theFrames;
+			fFrames = theFrames;
+			return theFrames.clone();
 		}
 		return new IStackFrame[0];
 	}
@@ -201,25 +212,6 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 		fSuspended = suspended;
 	}	
 	
-	/**
-	 * Notifies this thread it has been suspended by the given breakpoint.
-	 * 
-	 * @param breakpoint breakpoint
-	 */
-	public void suspendedBy(IBreakpoint breakpoint) {
-		fBreakpoint = breakpoint;
-		suspended(DebugEvent.BREAKPOINT);
-	}	
-	
-	/**
-	 * Notification the target has suspended for the given reason
-	 * 
-	 * @param detail reason for the suspend
-	 */
-	private void suspended(int detail) {
-		fireSuspendEvent(detail);
-	}	
-	
 	/**
 	 * Indicates if the reason for suspending this thread
 	 * is a breakpoint hit. 
@@ -227,7 +219,7 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 	 * @return suspension caused by breakpoint
 	 */
 	public boolean isSuspendedByBreakpoint() {
-		return fBreakpoint != null && isSuspended();
+		return fBreakpoints.length > 0 && isSuspended();
 	}
 
 	/**
@@ -241,10 +233,20 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 		fireResumeEvent(detail);
 	}
 
+	private synchronized void clearStackFrames() {
+		fFrames = null;
+		fValueStrings.reset();
+	}
+	
+	ValueStrings getValueStrings() {
+		return fValueStrings;
+	}
+
 	@Override
 	public void handleRascalEvent(RascalEvent event) {
 		// clear previous state
-		fBreakpoint = null;
+		clearStackFrames();
+		fBreakpoints = new IBreakpoint[0];
 		setStepping(false);
 		
 		switch (event.getKind()) {
@@ -253,6 +255,9 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 		
 				switch (event.getDetail()) {
 				case BREAKPOINT:
+					if (event.getData() instanceof ISourceLocation) {
+						fBreakpoints = getRascalDebugTarget().findBreakpoints((ISourceLocation) event.getData());
+					}
 					fireSuspendEvent(DebugEvent.BREAKPOINT);
 					break;
 
@@ -16,16 +16,21 @@ package org.rascalmpl.eclipse.debug.core.model;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IIndexedValue;
 import org.eclipse.debug.core.model.IValue;
 import org.eclipse.debug.core.model.IVariable;
 import org.rascalmpl.interpreter.utils.LimitedResultWriter;
 import org.rascalmpl.interpreter.utils.LimitedResultWriter.IOLimitReachedException;
 import org.rascalmpl.types.RascalTypeFactory;
 import org.rascalmpl.values.RascalValueFactory;
+import org.rascalmpl.values.ValueFactoryFactory;
 import org.rascalmpl.values.parsetrees.ITree;
 import org.rascalmpl.values.parsetrees.ProductionAdapter;
 import org.rascalmpl.values.parsetrees.SymbolAdapter;
@@ -33,23 +38,32 @@ import org.rascalmpl.values.parsetrees.TreeAdapter;
 
 import io.usethesource.vallang.IConstructor;
 import io.usethesource.vallang.IList;
+import io.usethesource.vallang.IListWriter;
 import io.usethesource.vallang.IMap;
 import io.usethesource.vallang.INode;
 import io.usethesource.vallang.ISet;
 import io.usethesource.vallang.ITuple;
 import io.usethesource.vallang.io.StandardTextWriter;
-import io.usethesource.vallang.type.ITypeVisitor;
 import io.usethesource.vallang.type.Type;
 import io.usethesource.vallang.type.TypeFactory;
 
-public class RascalValue extends RascalDebugElement implements IValue {
+/**
+ * Lists, sets, maps and nodes are presented as indexed values, such that the Variables view
+ * shows them in partitions and only creates variables for the elements of expanded partitions. 
+ */
+public class RascalValue extends RascalDebugElement implements IIndexedValue {
 	
 	/* do not print more than MAX_VALUE_STRING characters */
 	private final static int MAX_VALUE_STRING = 1000;
+	/* do not print more than MAX_LABEL_STRING characters of a map key */
+	private final static int MAX_LABEL_STRING = 100;
 	private final RascalStackFrame target;
 	private final io.usethesource.vallang.IValue value;
 	private final Type decl;
 	private IVariable[] children = null;
+	/* sets and maps can only be iterated, so we remember where the last partition ended */
+	private Iterator<io.usethesource.vallang.IValue> cursor = null;
+	private int cursorPosition = 0;
 
 	public RascalValue(RascalStackFrame target, Type decl, io.usethesource.vallang.IValue value) {
 		super(target.getRascalDebugTarget());
@@ -62,6 +76,13 @@ public class RascalValue extends RascalDebugElement implements IValue {
 	  return value;
 	}
 	
+	/**
+	 * @return the stack frame this value is shown in
+	 */
+	RascalStackFrame getFrame() {
+	  return target;
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IValue#getReferenceTypeName()
 	 */
@@ -74,12 +95,55 @@ public class RascalValue extends RascalDebugElement implements IValue {
 
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IValue#getValueString()
+	 * 
+	 * Composite values are rendered in the background, so until then this returns a placeholder.
 	 */
 	public String getValueString() throws DebugException {
 		if (value == null) {
 			return "<uninitialized>";
 		}
 		
+		ValueStrings strings = getValueStrings();
+		if (strings == null) {
+			return renderValueString();
+		}
+		
+		String result = strings.get(this, null);
+		return result != null ? result : ValueStrings.PENDING;
+	}
+	
+	/**
+	 * Passes the string of this value to the callback, right away if it is cheap or
+	 * was rendered already and otherwise from the background job that renders it.
+	 */
+	public void computeValueString(Consumer<String> callback) {
+		ValueStrings strings = value != null ? getValueStrings() : null;
+		String result = strings == null ? null : strings.get(this, callback);
+		
+		if (strings == null) {
+			callback.accept(value == null ? "<uninitialized>" : renderValueString());
+		}
+		else if (result != null) {
+			callback.accept(result);
+		}
+	}
+	
+	/**
+	 * @return where the strings of composite values are cached, or null if this value is cheap to render
+	 */
+	private ValueStrings getValueStrings() {
+		if (!(value instanceof IList || value instanceof ISet || value instanceof IMap || value instanceof INode || value instanceof ITuple)) {
+			return null;
+		}
+		
+		RascalThread thread = getRascalDebugTarget().getThread();
+		return thread != null ? thread.getValueStrings() : null;
+	}
+	
+	/**
+	 * Renders at most about MAX_VALUE_STRING characters of the value, on the calling thread.
+	 */
+	String renderValueString() {
 		if (value.getType().isSubtypeOf(RascalValueFactory.Tree)) {
 			return getTreeValueString();
 		}
@@ -136,215 +200,258 @@ public class RascalValue extends RascalDebugElement implements IValue {
 		return b.toString();
 	}
 
+	/**
+	 * @return true if the elements of the value are created on demand, by index
+	 */
+	private boolean isCollection() {
+	  return value instanceof IList || value instanceof ISet || value instanceof IMap 
+	      || (value instanceof INode && !(value instanceof IConstructor));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getSize()
+	 */
+	public int getSize() throws DebugException {
+	  if (value == null) {
+	    return 0;
+	  }
+	  
+	  if (isCollection()) {
+	    return collectionSize();
+	  }
+	  
+	  if (isTree()) {
+	    return treeChildren().length();
+	  }
+	  
+	  if (value instanceof IConstructor) {
+	    IConstructor node = (IConstructor) value;
+	    return node.arity() + (node.mayHaveKeywordParameters() ? node.asWithKeywordParameters().getParameters().size() : 0);
+	  }
+	  
+	  if (value instanceof ITuple) {
+	    return ((ITuple) value).arity();
+	  }
+	  
+	  return 0;
+	}
+	
+	private int collectionSize() {
+	  if (value instanceof IList) {
+	    return ((IList) value).length();
+	  }
+	  else if (value instanceof ISet) {
+	    return ((ISet) value).size();
+	  }
+	  else if (value instanceof IMap) {
+	    return ((IMap) value).size();
+	  }
+	  else {
+	    return ((INode) value).arity();
+	  }
+	}
+	
+	private boolean isTree() {
+	  return value.getType().isSubtypeOf(RascalValueFactory.Tree);
+	}
+	
+	/**
+	 * @return the children of a parse tree as they are shown: the elements of a list, the arguments
+	 * of an application or the alternatives of an ambiguity
+	 */
+	private IList treeChildren() {
+	  ITree tree = (ITree) value;
+	  
+	  if (TreeAdapter.isList(tree)) {
+	    return TreeAdapter.getListASTArgs(tree);
+	  }
+	  
+	  if (TreeAdapter.isAppl(tree)) {
+	    return ProductionAdapter.isLexical(TreeAdapter.getProduction(tree)) ? TreeAdapter.getArgs(tree) : TreeAdapter.getASTArgs(tree);
+	  }
+	  
+	  if (TreeAdapter.isAmb(tree)) {
+	    IListWriter alts = ValueFactoryFactory.getValueFactory().listWriter();
+	    alts.appendAll(TreeAdapter.getAlternatives(tree));
+	    return alts.done();
+	  }
+	  
+	  return ValueFactoryFactory.getValueFactory().list();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getInitialOffset()
+	 */
+	public int getInitialOffset() {
+	  return 0;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getVariable(int)
+	 */
+	public IVariable getVariable(int offset) throws DebugException {
+	  if (children != null) {
+	    return children[offset];
+	  }
+	  
+	  return createElements(offset, 1)[0];
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getVariables(int, int)
+	 */
+	public IVariable[] getVariables(int offset, int length) throws DebugException {
+	  if (children != null) {
+	    return Arrays.copyOfRange(children, offset, offset + length);
+	  }
+	  
+	  return createElements(offset, length);
+	}
+	
+	/**
+	 * Creates the variables of a range of children, without creating the others.
+	 */
+	private IVariable[] createElements(int offset, int length) {
+	  IVariable[] result = new IVariable[length];
+	  
+	  if (isCollection()) {
+	    for (int i = 0; i < length; i++) {
+	      result[i] = createElement(offset + i);
+	    }
+	  }
+	  else if (isTree()) {
+	    createTreeElements(treeChildren(), offset, result);
+	  }
+	  else if (value instanceof IConstructor) {
+	    createConstructorElements((IConstructor) value, offset, result);
+	  }
+	  else if (value instanceof ITuple) {
+	    ITuple node = (ITuple) value;
+	    Type toUse = decl.isTuple() ? decl : node.getType();
+	    
+	    for (int i = 0; i < length; i++) {
+	      int field = offset + i;
+	      result[i] = new RascalVariable(target, toUse.hasFieldNames() ? toUse.getFieldName(field) : "[" + field + "]", toUse.getFieldType(field), node.get(field));
+	    }
+	  }
+	  
+	  return result;
+	}
+	
+	private IVariable createElement(int i) {
+	  TypeFactory tf = TypeFactory.getInstance();
+	  
+	  if (value instanceof IList) {
+	    IList list = (IList) value;
+	    return new RascalVariable(target, "[" + i + "]", decl.isList() ? decl.getElementType() : list.getElementType(), list.get(i));
+	  }
+	  else if (value instanceof ISet) {
+	    return new RascalVariable(target, "[" + i + "]", decl.isSet() ? decl.getElementType() : tf.valueType(), elementAt(i));
+	  }
+	  else if (value instanceof IMap) {
+	    io.usethesource.vallang.IValue key = elementAt(i);
+	    return new RascalVariable(target, getLabel(key), decl.isMap() ? decl.getValueType() : tf.valueType(), ((IMap) value).get(key));
+	  }
+	  else {
+	    return new RascalVariable(target, "[" + i + "]", tf.valueType(), ((INode) value).get(i));
+	  }
+	}
+	
+	private void createTreeElements(IList args, int offset, IVariable[] result) {
+	  ITree tree = (ITree) value;
+	  RascalTypeFactory rtf = RascalTypeFactory.getInstance();
+	  
+	  if (TreeAdapter.isAppl(tree) && !TreeAdapter.isList(tree)) {
+	    IConstructor prod = TreeAdapter.getProduction(tree);
+	    IList symbols = ProductionAdapter.isLexical(prod) ? ProductionAdapter.getSymbols(prod) : ProductionAdapter.getASTSymbols(prod);
+	    
+	    for (int i = 0; i < result.length; i++) {
+	      IConstructor sym = (IConstructor) symbols.get(offset + i);
+	      String label = SymbolAdapter.isLabel(sym) ? SymbolAdapter.getLabelName(sym) : ("arg " + (offset + i));
+	      result[i] = new RascalVariable(target, label, rtf.nonTerminalType(sym), args.get(offset + i));
+	    }
+	  }
+	  else {
+	    String prefix = TreeAdapter.isAmb(tree) ? "alt " : "elem ";
+	    
+	    for (int i = 0; i < result.length; i++) {
+	      io.usethesource.vallang.IValue elem = args.get(offset + i);
+	      result[i] = new RascalVariable(target, prefix + (offset + i + 1), rtf.nonTerminalType((IConstructor) elem), elem);
+	    }
+	  }
+	}
+	
+	private void createConstructorElements(IConstructor node, int offset, IVariable[] result) {
+	  Type type = node.getConstructorType();
+	  int arity = node.arity();
+	  List<Map.Entry<String, io.usethesource.vallang.IValue>> parameters = null;
+	  
+	  for (int i = 0; i < result.length; i++) {
+	    int field = offset + i;
+	    
+	    if (field < arity) {
+	      result[i] = new RascalVariable(target, type.hasFieldNames() ? type.getFieldName(field) : "" + field, type.getFieldType(field), node.get(field));
+	    }
+	    else {
+	      if (parameters == null) {
+	        parameters = new ArrayList<>(node.asWithKeywordParameters().getParameters().entrySet());
+	      }
+	      
+	      Map.Entry<String, io.usethesource.vallang.IValue> parameter = parameters.get(field - arity);
+	      result[i] = new RascalVariable(target, "[" + parameter.getKey() + "]", parameter.getValue().getType(), parameter.getValue());
+	    }
+	  }
+	}
+	
+	/**
+	 * @return the i-th element of a set, or key of a map, in iteration order
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized io.usethesource.vallang.IValue elementAt(int i) {
+	  if (cursor == null || i < cursorPosition) {
+	    cursor = ((Iterable<io.usethesource.vallang.IValue>) value).iterator();
+	    cursorPosition = 0;
+	  }
+	  
+	  while (cursorPosition < i) {
+	    cursor.next();
+	    cursorPosition++;
+	  }
+	  
+	  cursorPosition++;
+	  return cursor.next();
+	}
+	
+	private static String getLabel(io.usethesource.vallang.IValue key) {
+	  Writer w = new LimitedResultWriter(MAX_LABEL_STRING);
+	  try {
+	    new StandardTextWriter(false).write(key, w);
+	    return w.toString();
+	  } 
+	  catch (IOLimitReachedException e) {
+	    return w.toString();
+	  }
+	  catch (IOException e) {
+	    return "error during serialization...";
+	  }
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IValue#getVariables()
+	 * 
+	 * Only for small values; the Variables view asks for large ones partition by partition.
 	 */
 	public IVariable[] getVariables() throws DebugException {
 	  if (children != null) {
 	    return children.clone();
 	  }
 	  
-	  TypeFactory tf = TypeFactory.getInstance();
-	  final Type vt = tf.valueType();
+	  if (value == null) {
+	    return null;
+	  }
 	  
-		if (value == null) {
-		  return null;
-		}
-		
-		return children = value.getType().accept(new ITypeVisitor<IVariable[], RuntimeException>() {
-			@Override
-			public IVariable[] visitReal(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitInteger(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitRational(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitList(Type type) {
-				IList list = (IList) value;
-				IVariable[] result = new IVariable[list.length()];
-				for (int i = 0; i < list.length(); i++) {
-					result[i] = new RascalVariable(target, "[" + i + "]", decl.isList() ? decl.getElementType() : list.getElementType(), list.get(i));
-				}
-				return result; 
-			}
-
-			@Override
-			public IVariable[] visitMap(Type type) {
-				IMap map = (IMap) value;
-				IVariable[] result = new IVariable[map.size()];
-				int i = 0;
-				for (io.usethesource.vallang.IValue key : map) {
-					result[i++] = new RascalVariable(target, key.toString(), decl.isMap() ? decl.getValueType() : vt, map.get(key));
-				}
-				return result;
-			}
-
-			@Override
-			public IVariable[] visitNumber(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitAlias(Type type) {
-				return type.getAliased().accept(this);
-			}
-
-			@Override
-			public IVariable[] visitSet(Type type) {
-				ISet set = (ISet) value;
-				IVariable[] result = new IVariable[set.size()];
-				int i = 0;
-				for (io.usethesource.vallang.IValue elem : set) {
-					result[i++] = new RascalVariable(target, "[" + i + "]", decl.isSet() ? decl.getElementType() : vt, elem);
-				}
-				return result;
-			}
-
-			@Override
-			public IVariable[] visitSourceLocation(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitString(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitNode(Type type) {
-				INode node = (INode) value;
-				IVariable[] result = new IVariable[node.arity()];
-				for (int i = 0; i < result.length; i++) {
-					result[i] = new RascalVariable(target, "[" + i + "]", TypeFactory.getInstance().valueType(), node.get(i));
-				}
-				return result;
-			}
-
-			@Override
-			public IVariable[] visitConstructor(Type type) {
-				if (type.isSubtypeOf(RascalValueFactory.Tree)) {
-					return visitTree();
-				}
-				
-				IConstructor node = (IConstructor) value;
-				List<IVariable> result = new ArrayList<>();
-				for (int i = 0; i < node.arity(); i++) {
-					result.add(new RascalVariable(target, type.hasFieldNames() ? type.getFieldName(i) : "" + i, node.getConstructorType().getFieldType(i), node.get(i)));
-				}
-				if (node.mayHaveKeywordParameters()) {
-					Map<String, io.usethesource.vallang.IValue> parameters = node.asWithKeywordParameters().getParameters();
-					parameters.forEach((name, value) -> {
-						result.add(new RascalVariable(target, "[" + name + "]", value.getType(), value));
-					});
-				}
-				return result.toArray(new IVariable[result.size()]);
-			}
-
-			private IVariable[] visitTree() {
-				ITree tree = (ITree) value;
-
-				if (TreeAdapter.isList(tree)) {
-					IList elems = TreeAdapter.getListASTArgs(tree);
-					IVariable[] vars = new IVariable[elems.length()];
-					int i = 0;
-					for (io.usethesource.vallang.IValue elem : elems) {
-						vars[i++] = new RascalVariable(target,  "elem " + i, RascalTypeFactory.getInstance().nonTerminalType((IConstructor) elem), elem);
-					}
-					
-					return vars;
-				}
-				
-				if (TreeAdapter.isAppl(tree)) {
-					IConstructor prod = TreeAdapter.getProduction(tree);
-					boolean isLex = ProductionAdapter.isLexical(prod);
-					IList astSymbols = isLex ? ProductionAdapter.getSymbols(prod) : ProductionAdapter.getASTSymbols(prod);
-					IList args = isLex ? TreeAdapter.getArgs(tree) : TreeAdapter.getASTArgs(tree);
-					IVariable[] vars = new IVariable[args.length()];
-					
-					for (int i = 0; i < vars.length; i++) {
-						IConstructor sym = (IConstructor) astSymbols.get(i);
-						String label = SymbolAdapter.isLabel(sym) ? SymbolAdapter.getLabelName(sym) : ("arg " + i);
-						vars[i] = new RascalVariable(target, label,  RascalTypeFactory.getInstance().nonTerminalType(sym), args.get(i));
-					}
-					
-					return vars;
-				}
-				
-				if (TreeAdapter.isAmb(tree)) {
-					ISet alts = TreeAdapter.getAlternatives(tree);
-					IVariable[] vars = new IVariable[alts.size()];
-					int i = 0;
-					for (io.usethesource.vallang.IValue elem : alts) {
-						vars[i++] = new RascalVariable(target, "alt " + i,  RascalTypeFactory.getInstance().nonTerminalType((IConstructor) elem) , elem);
-					}
-					
-					return vars;
-				}
-				
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitAbstractData(Type type) {
-				return visitConstructor(((IConstructor) value).getConstructorType());
-			}
-
-			@Override
-			public IVariable[] visitTuple(Type type) {
-				ITuple node = (ITuple) value;
-				IVariable[] result = new IVariable[node.arity()];
-				for (int i = 0; i < result.length; i++) {
-				  Type toUse = decl.isTuple() ? decl : type;
-					result[i] = new RascalVariable(target, toUse.hasFieldNames() ? toUse.getFieldName(i) : "[" + i + "]", toUse.getFieldType(i), node.get(i));
-				}
-				return result;
-			}
-
-			@Override
-			public IVariable[] visitValue(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitFunction(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitVoid(Type type) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitBool(Type boolType) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitParameter(Type parameterType) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitExternal(Type externalType) {
-				return new IVariable[0];
-			}
-
-			@Override
-			public IVariable[] visitDateTime(Type type) {
-				return new IVariable[0];
-			}
-
-		});
+	  children = createElements(0, getSize());
+	  return children.clone();
 	}
 
 	/* (non-Javadoc)
@@ -379,7 +486,7 @@ public class RascalValue extends RascalDebugElement implements IValue {
 	 */
 	public String toString() {
 		if (value != null)
-			return value.toString();
+			return renderValueString();
 		else
 			return "<uninitialized>";
 	}
@@ -0,0 +1,167 @@
+package org.rascalmpl.eclipse.debug.core.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugPlugin;
+
+import io.usethesource.vallang.IValue;
+
+/**
+ * The rendered strings of the values of one suspension of a thread. Values are rendered by a
+ * background job, at most once per runtime value, and forgotten when the thread resumes. The
+ * debug model creates a new RascalValue each time a variable is asked for its value, so requests
+ * are keyed by the runtime value, and the frames that showed a rendered value are announced to
+ * the Variables view in batches, which then asks for the strings again.
+ */
+class ValueStrings {
+	/* shown until the string of a value is available */
+	static final String PENDING = "...";
+	/* the strings are bounded by the value renderer, so this bounds the memory of the cache */
+	private static final int MAX_ENTRIES = 10_000;
+	/* rendered values are announced at least this often while the job runs */
+	private static final long ANNOUNCE_MILLIS = 100;
+
+	private final Map<IValue, String> strings = new IdentityHashMap<>();
+	private final Map<IValue, Request> pending = new IdentityHashMap<>();
+	private int generation = 0;
+
+	/**
+	 * A runtime value that waits to be rendered, with everyone that waits for it.
+	 */
+	private static final class Request {
+		private final RascalValue value;
+		private final List<Consumer<String>> callbacks = new ArrayList<>(1);
+		private final Set<RascalStackFrame> frames = new HashSet<>(2);
+
+		Request(RascalValue value) {
+			this.value = value;
+		}
+	}
+
+	private final Job renderer = new Job("Rendering Rascal values") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			Set<RascalStackFrame> rendered = new HashSet<>();
+			long lastAnnounced = System.currentTimeMillis();
+
+			while (!monitor.isCanceled()) {
+				Request next;
+				int current;
+				String string;
+
+				synchronized (ValueStrings.this) {
+					Iterator<Request> it = pending.values().iterator();
+					if (!it.hasNext()) {
+						break;
+					}
+
+					next = it.next();
+					it.remove();
+					current = generation;
+					string = strings.get(next.value.getRuntimeValue());
+				}
+
+				boolean stale = false;
+
+				if (string == null) {
+					string = next.value.renderValueString();
+
+					synchronized (ValueStrings.this) {
+						// if the thread resumed in the mean time, the string is not cached nor announced
+						stale = current != generation;
+
+						if (!stale) {
+							if (strings.size() >= MAX_ENTRIES) {
+								strings.clear();
+							}
+							strings.put(next.value.getRuntimeValue(), string);
+						}
+					}
+				}
+
+				for (Consumer<String> callback : next.callbacks) {
+					callback.accept(string);
+				}
+
+				if (!stale) {
+					rendered.addAll(next.frames);
+				}
+
+				if (System.currentTimeMillis() - lastAnnounced > ANNOUNCE_MILLIS) {
+					announce(rendered);
+					lastAnnounced = System.currentTimeMillis();
+				}
+			}
+
+			announce(rendered);
+			return Status.OK_STATUS;
+		}
+	};
+
+	ValueStrings() {
+		renderer.setSystem(true);
+	}
+
+	private static void announce(Set<RascalStackFrame> rendered) {
+		if (!rendered.isEmpty()) {
+			List<DebugEvent> events = new ArrayList<>(rendered.size());
+			for (RascalStackFrame frame : rendered) {
+				events.add(new DebugEvent(frame, DebugEvent.CHANGE, DebugEvent.CONTENT));
+			}
+			DebugPlugin.getDefault().fireDebugEventSet(events.toArray(new DebugEvent[events.size()]));
+			rendered.clear();
+		}
+	}
+
+	/**
+	 * Returns the string of the value if it was rendered already, or otherwise schedules
+	 * rendering it and returns <code>null</code>.
+	 *
+	 * @param value the value to render
+	 * @param callback receives the string once it is rendered, may be <code>null</code>
+	 * @return the string of the value, or <code>null</code> if it is not available yet
+	 */
+	synchronized String get(RascalValue value, Consumer<String> callback) {
+		String result = strings.get(value.getRuntimeValue());
+
+		if (result == null) {
+			Request request = pending.computeIfAbsent(value.getRuntimeValue(), v -> new Request(value));
+			if (callback != null) {
+				request.callbacks.add(callback);
+			}
+			else {
+				// only the Variables view asks without a callback, and it shows the frame of the value
+				request.frames.add(value.getFrame());
+			}
+			renderer.schedule();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Forgets all strings, because the values of a previous suspension are not shown anymore.
+	 * Requests that were not rendered yet are still answered, but not cached.
+	 */
+	synchronized void reset() {
+		generation++;
+		strings.clear();
+		pending.values().removeIf(request -> request.callbacks.isEmpty());
+
+		for (Request request : pending.values()) {
+			request.frames.clear();
+		}
+	}
+}
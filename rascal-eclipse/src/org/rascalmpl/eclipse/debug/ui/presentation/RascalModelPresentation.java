@@ -28,6 +28,7 @@ import org.eclipse.ui.part.FileEditorInput;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.eclipse.debug.core.model.RascalDebugTarget;
+import org.rascalmpl.eclipse.debug.core.model.RascalModuleScope;
 import org.rascalmpl.eclipse.debug.core.model.RascalStackFrame;
 import org.rascalmpl.eclipse.debug.core.model.RascalThread;
 import org.rascalmpl.eclipse.debug.core.model.RascalValue;
@@ -62,6 +63,8 @@ public class RascalModelPresentation extends LabelProvider implements IDebugMode
 	      return ((RascalValue) element).getReferenceTypeName();
 	    } else if (element instanceof RascalVariable) {
 	      return ((RascalVariable) element).getName();
+	    } else if (element instanceof RascalModuleScope) {
+	      return ((RascalModuleScope) element).getName();
 	    }
 	  } catch (DebugException e) {
 	    return null;
@@ -151,6 +154,11 @@ public class RascalModelPresentation extends LabelProvider implements IDebugMode
 	 * @see org.eclipse.debug.ui.IDebugModelPresentation#computeDetail(org.eclipse.debug.core.model.IValue, org.eclipse.debug.ui.IValueDetailListener)
 	 */
 	public void computeDetail(IValue value, IValueDetailListener listener) {
+		if (value instanceof RascalValue) {
+			((RascalValue) value).computeValueString(detail -> listener.detailComputed(value, detail));
+			return;
+		}
+		
 		String detail = "";
 		try {
 			detail = value.getValueString();
@@ -11,8 +11,13 @@
  *******************************************************************************/
 package org.rascalmpl.eclipse.editor;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.eclipse.core.resources.IMarker;
 import org.rascalmpl.values.parsetrees.ITree;
@@ -25,6 +30,7 @@ import io.usethesource.vallang.ISet;
 import io.usethesource.vallang.ISourceLocation;
 import io.usethesource.vallang.IString;
 import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.IWithKeywordParameters;
 import io.usethesource.vallang.type.Type;
 
 public class MessagesTo {
@@ -33,13 +39,77 @@ public class MessagesTo {
 	MessagesTo(int defaultSeverity,Map<String,Integer> severityMap){
 		this.severityMap = severityMap;
 		this.defaultSeverity = defaultSeverity;
+		
+		for (Integer severity : severityMap.values()) {
+			attributes.put(severity, newAttributes(severity));
+		}
+		attributes.put(defaultSeverity, newAttributes(defaultSeverity));
 	}
 	
 	private Map<String,Integer> severityMap;
 	private int defaultSeverity;
 	
-
+	/**
+	 * The marker attributes only depend on the severity, so they are shared by all messages.
+	 */
+	private final Map<Integer, Map<String,Object>> attributes = new HashMap<>();
 	
+	/**
+	 * The index of the last set of messages that was processed, such that callers which
+	 * hand the same set to {@link #process(ISourceLocation, ISet, IMessageHandler)} for
+	 * every file do not have to go through the whole set each time.
+	 */
+	private volatile MessageIndex lastIndex = MessageIndex.EMPTY;
+	
+	/**
+	 * Messages grouped by the path of the file they are reported on. Like before, only the
+	 * path is compared, so messages on project:// locations still apply to trees parsed
+	 * from file:// or other locations of the same path.
+	 */
+	public static class MessageIndex {
+		private static final MessageIndex EMPTY = new MessageIndex(null, Collections.emptyMap(), Collections.emptyMap());
+		
+		private final ISet messages;
+		private final Map<String, List<IConstructor>> byPath;
+		/* for every path, the top location of the first message reported on it */
+		private final Map<String, ISourceLocation> files;
+		
+		private MessageIndex(ISet messages, Map<String, List<IConstructor>> byPath, Map<String, ISourceLocation> files) {
+			this.messages = messages;
+			this.byPath = byPath;
+			this.files = files;
+		}
+		
+		public static MessageIndex of(ISet messages) {
+			Type elemType = messages.getType().getElementType();
+			
+			if (!elemType.isAbstractData() || !elemType.getName().equals("Message")) {
+				return new MessageIndex(messages, Collections.emptyMap(), Collections.emptyMap());
+			}
+			
+			Map<String, List<IConstructor>> byPath = new HashMap<>();
+			Map<String, ISourceLocation> files = new HashMap<>();
+			
+			for (IValue messagev : messages) {
+				IConstructor message = (IConstructor) messagev;
+				ISourceLocation loc = (ISourceLocation) message.get(1);
+				byPath.computeIfAbsent(loc.getPath(), k -> new ArrayList<>()).add(message);
+				files.putIfAbsent(loc.getPath(), loc.top());
+			}
+			
+			return new MessageIndex(messages, byPath, files);
+		}
+		
+		public Collection<ISourceLocation> getFiles() {
+			return files.values();
+		}
+		
+		public List<IConstructor> getMessages(ISourceLocation file) {
+			List<IConstructor> result = byPath.get(file.getPath());
+			return result != null ? result : Collections.emptyList();
+		}
+	}
+
 	public void process(final ITree parseTree, IMessageHandler handler) {
 		if (parseTree != null) {
 			processMarkers(parseTree, handler); 
@@ -48,18 +118,22 @@ public class MessagesTo {
 
 	private void processMarkers(ITree tree, IMessageHandler handler) {
 		if (TreeAdapter.isAppl(tree) && !TreeAdapter.isLexical(tree)) {
-			IValue anno = tree.asWithKeywordParameters().getParameter("message");
-			if (anno != null && anno.getType().isAbstractData() && anno.getType().getName().equals("Message")) {
-				IConstructor message = (IConstructor) anno;
-				ISourceLocation loc = TreeAdapter.getLocation(tree);
-				processMessage(message, loc, handler);
-			}
+			IWithKeywordParameters<? extends IConstructor> params = tree.asWithKeywordParameters();
 			
-			anno = tree.asWithKeywordParameters().getParameter("messages");
-			
-			if (anno != null && anno.getType().isSet()) {
-				process((ISourceLocation) tree.asWithKeywordParameters().getParameter("src"),  (ISet) anno, handler);
-				return; // we do not recurse if we found messages (for efficiency)
+			if (params.hasParameters()) {
+				IValue anno = params.getParameter("message");
+				if (anno != null && anno.getType().isAbstractData() && anno.getType().getName().equals("Message")) {
+					IConstructor message = (IConstructor) anno;
+					ISourceLocation loc = TreeAdapter.getLocation(tree);
+					processMessage(message, loc, handler);
+				}
+
+				anno = params.getParameter("messages");
+
+				if (anno != null && anno.getType().isSet()) {
+					process((ISourceLocation) params.getParameter("src"),  (ISet) anno, handler);
+					return; // we do not recurse if we found messages (for efficiency)
+				}
 			}
 			
 			for (IValue child : TreeAdapter.getArgs(tree)) {
@@ -74,40 +148,85 @@ public class MessagesTo {
 	}
 
 	public void process(ISourceLocation treeLoc, ISet set, IMessageHandler handler) {
-		Type elemType = set.getType().getElementType();
-
-		if (elemType.isAbstractData() && elemType.getName().equals("Message")) {
-
-			for (IValue messagev : ((ISet) set)) {
-				IConstructor message = (IConstructor)messagev;
-				ISourceLocation loc = (ISourceLocation) message.get(1);
-				
-				if (loc.getPath().equals(treeLoc.getPath()))
-					processMessage(message, loc, handler);
+		MessageIndex index = lastIndex;
+		
+		if (index.messages != set) {
+			index = MessageIndex.of(set);
+			lastIndex = index;
+		}
+		
+		process(treeLoc, index, handler);
+	}
+	
+	public void process(ISourceLocation treeLoc, MessageIndex index, IMessageHandler handler) {
+		if (treeLoc == null) {
+			return;
+		}
+		
+		for (IConstructor message : index.getMessages(treeLoc)) {
+			processMessage(message, (ISourceLocation) message.get(1), handler);
+		}
+	}
+	
+	/**
+	 * Feeds the messages of every file in the set to the handler for that file, in a single pass.
+	 * Files for which no handler is returned are skipped.
+	 */
+	public void process(ISet set, Function<ISourceLocation, IMessageHandler> handlers) {
+		process(MessageIndex.of(set), handlers);
+	}
+	
+	public void process(MessageIndex index, Function<ISourceLocation, IMessageHandler> handlers) {
+		for (ISourceLocation file : index.getFiles()) {
+			IMessageHandler handler = handlers.apply(file);
+			
+			if (handler != null) {
+				process(file, index, handler);
 			}
 		}
 	}
 	
+	/**
+	 * Feeds a single message to the handler, with the same attributes as the other process methods.
+	 */
+	public void process(IConstructor message, IMessageHandler handler) {
+		processMessage(message, (ISourceLocation) message.get(1), handler);
+	}
+
 	private void processMessage(IConstructor marker, ISourceLocation loc, IMessageHandler handler)  {
-		int severity;
-		if(severityMap.containsKey(marker.getName())){
-			severity = severityMap.get(marker.getName());
+		String msg = getText(marker);
+		Map<String,Object> attrs = attributes.get(getSeverity(marker));
+		if(loc.hasOffsetLength() && loc.hasLineColumn()) {
+			handler.handleSimpleMessage(msg, loc.getOffset(), loc.getOffset() + loc.getLength(), loc.getBeginColumn(), loc.getEndColumn(), loc.getBeginLine(), loc.getEndLine(), attrs);
 		} else {
-			severity = defaultSeverity;
+			handler.handleSimpleMessage(msg, 0, 0, 0, 0, 0, 0, attrs);
 		}
-
-		String msg = ((IString) marker.get(0)).getValue();
+	}
+	
+	/**
+	 * @return the severity a message is reported with, based on the name of its constructor
+	 */
+	public int getSeverity(IConstructor message) {
+		Integer severity = severityMap.get(message.getName());
+		return severity != null ? severity : defaultSeverity;
+	}
+	
+	/**
+	 * @return the text of a message, truncated to a size that markers can hold
+	 */
+	public String getText(IConstructor message) {
+		String msg = ((IString) message.get(0)).getValue();
 		if(msg.length() >= MAX_MESSAGE_LENGTH) {
 			msg = msg.substring(0, MAX_MESSAGE_LENGTH);
 		}
+		return msg;
+	}
+	
+	private static Map<String,Object> newAttributes(int severity) {
 		Map<String,Object> attrs = new HashMap<String,Object>();
 		attrs.put(IMarker.SEVERITY, severity);
 		attrs.put(IMarker.PRIORITY, IMarker.PRIORITY_HIGH);
-		if(loc.hasOffsetLength() && loc.hasLineColumn()) {
-			handler.handleSimpleMessage(msg, loc.getOffset(), loc.getOffset() + loc.getLength(), loc.getBeginColumn(), loc.getEndColumn(), loc.getBeginLine(), loc.getEndLine(), attrs);
-		} else {
-			handler.handleSimpleMessage(msg, 0, 0, 0, 0, 0, 0, attrs);
-		}
+		return Collections.unmodifiableMap(attrs);
 	}
 	
 	public int compareTo(IModelListener o) {
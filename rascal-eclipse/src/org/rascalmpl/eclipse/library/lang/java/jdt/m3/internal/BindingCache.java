@@ -0,0 +1,160 @@
+package org.rascalmpl.eclipse.library.lang.java.jdt.m3.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+import io.usethesource.vallang.ISourceLocation;
+
+/**
+ * The conversions from binding keys to locations that the M3 and AST converters make, shared by all
+ * extractions from a project in this session. Most bindings refer to the same JDK and library types,
+ * so extracting files one by one then costs about as much per file as extracting a whole project.
+ * The conversions of a project are dropped when its classpath changes, and the ones that mention a
+ * type of a compilation unit when that unit changes, because the keys of local and anonymous types
+ * contain their position in the source.
+ *
+ * The parsers of an extraction share the concurrent map of their project without locking. A map is
+ * cleared when an insertion would take it beyond MAX_ENTRIES, and the total number of conversions is
+ * bounded each time a map is handed out, by dropping the maps of the least recently used projects first.
+ */
+class BindingCache implements IElementChangedListener {
+    private static final int MAX_ENTRIES = 250_000;
+    private static BindingCache instance;
+
+    /* in order of use, the least recently used project first */
+    private final LinkedHashMap<String, Map<String, ISourceLocation>> projects = new LinkedHashMap<>(16, 0.75f, true);
+
+    public static synchronized BindingCache getInstance() {
+        if (instance == null) {
+            instance = new BindingCache();
+            JavaCore.addElementChangedListener(instance, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+        }
+        return instance;
+    }
+
+    private BindingCache() { }
+
+    /**
+     * @return the thread-safe cache of binding locations of the project
+     */
+    public synchronized Map<String, ISourceLocation> forProject(IJavaProject project) {
+        Map<String, ISourceLocation> result = projects.computeIfAbsent(project.getElementName(), p -> new BoundedMap());
+        trim(result);
+        return result;
+    }
+
+    /**
+     * A concurrent map that is cleared instead of growing beyond MAX_ENTRIES.
+     */
+    private static final class BoundedMap extends ConcurrentHashMap<String, ISourceLocation> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public ISourceLocation put(String key, ISourceLocation value) {
+            makeRoom();
+            return super.put(key, value);
+        }
+
+        @Override
+        public ISourceLocation putIfAbsent(String key, ISourceLocation value) {
+            makeRoom();
+            return super.putIfAbsent(key, value);
+        }
+
+        @Override
+        public ISourceLocation computeIfAbsent(String key, Function<? super String, ? extends ISourceLocation> mappingFunction) {
+            makeRoom();
+            return super.computeIfAbsent(key, mappingFunction);
+        }
+
+        private void makeRoom() {
+            if (mappingCount() >= MAX_ENTRIES) {
+                clear();
+            }
+        }
+    }
+
+    /**
+     * Drops the maps of the least recently used projects until all of them together are within bounds,
+     * or else clears the map that is in use.
+     */
+    private void trim(Map<String, ISourceLocation> inUse) {
+        long total = 0;
+        for (Map<String, ISourceLocation> map : projects.values()) {
+            total += map.size();
+        }
+
+        for (Iterator<Map<String, ISourceLocation>> it = projects.values().iterator(); total > MAX_ENTRIES && it.hasNext(); ) {
+            Map<String, ISourceLocation> map = it.next();
+
+            if (map != inUse) {
+                total -= map.size();
+                it.remove();
+            }
+        }
+
+        if (total > MAX_ENTRIES) {
+            inUse.clear();
+        }
+    }
+
+    @Override
+    public synchronized void elementChanged(ElementChangedEvent event) {
+        if (!projects.isEmpty()) {
+            visit(event.getDelta());
+        }
+    }
+
+    private void visit(IJavaElementDelta delta) {
+        IJavaElement element = delta.getElement();
+
+        switch (element.getElementType()) {
+            case IJavaElement.JAVA_PROJECT:
+                if (delta.getKind() == IJavaElementDelta.REMOVED
+                        || (delta.getFlags() & (IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+                    projects.remove(element.getElementName());
+                    return;
+                }
+                if (!projects.containsKey(element.getElementName())) {
+                    return;
+                }
+                break;
+            case IJavaElement.COMPILATION_UNIT:
+                Map<String, ISourceLocation> map = projects.get(element.getJavaProject().getElementName());
+                if (map != null) {
+                    forget(map, (ICompilationUnit) element);
+                }
+                return;
+        }
+
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            visit(child);
+        }
+    }
+
+    /**
+     * Removes the conversions of which the key mentions the main type of the unit, its member, local or
+     * anonymous types (which start with "Lp/X$"), or the secondary types declared in it ("Lp/X~").
+     */
+    private static void forget(Map<String, ISourceLocation> map, ICompilationUnit unit) {
+        String pkg = unit.getParent().getElementName().replace('.', '/');
+        String name = unit.getElementName().replaceFirst("\\.java$", "");
+        String type = "L" + (pkg.isEmpty() ? "" : pkg + "/") + name;
+        String main = type + ";";
+        String nested = type + "$";
+        String secondary = type + "~";
+
+        map.keySet().removeIf(key -> key.contains(main) || key.contains(nested) || key.contains(secondary));
+    }
+}
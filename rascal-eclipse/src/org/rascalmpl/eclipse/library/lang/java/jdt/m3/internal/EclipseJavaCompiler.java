@@ -2,14 +2,29 @@ package org.rascalmpl.eclipse.library.lang.java.jdt.m3.internal;
 
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
@@ -37,62 +52,268 @@ import io.usethesource.vallang.IValueFactory;
 import io.usethesource.vallang.type.TypeStore;
 
 public class EclipseJavaCompiler extends org.rascalmpl.library.lang.java.m3.internal.EclipseJavaCompiler {
+    /* number of compilation units that one parser compiles together */
+    private static final int BATCH_SIZE = 64;
+    /* number of parsers that compile batches at the same time */
+    private static final int PARSERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private final IRascalMonitor monitor;
+    private final TypeStore definitions;
+    private LimitedTypeStore m3Store;
 
     public EclipseJavaCompiler(IValueFactory vf, TypeStore definitions, IRascalMonitor monitor) {
         super(vf, definitions, monitor);
+        this.monitor = monitor;
+        this.definitions = definitions;
     }
     
     public ISet createAstsFromEclipseProject(ISourceLocation root, IBool collectBindings, IBool errorRecovery, IEvaluatorContext ctx) {
-        LimitedTypeStore store = getM3Store();
+        LimitedTypeStore store = getSharedM3Store();
 
         ISetWriter result = VF.setWriter();
-        Map<String, ISourceLocation> cache = new HashMap<>();
-        compileAllFiles(root, collectBindings.getValue(), errorRecovery.getValue(), (loc, ast) -> {
-            result.insert(convertToAST(collectBindings, cache, loc, ast, store));
+        Map<String, ISourceLocation> cache = BindingCache.getInstance().forProject(getProject(root));
+        compileAllFiles(root, collectBindings.getValue(), errorRecovery.getValue(), "Creating ASTs for " + root.getAuthority(), (loc, ast) -> {
+            IValue converted = convertToAST(collectBindings, cache, loc, ast, store);
+            synchronized (result) {
+                result.insert(converted);
+            }
         });
         return result.done();
     }
     
+    /**
+     * @return the M3 type store, which is the same for every extraction of this instance
+     */
+    private synchronized LimitedTypeStore getSharedM3Store() {
+        if (m3Store == null) {
+            m3Store = getM3Store();
+        }
+        return m3Store;
+    }
+
+    /**
+     * Composes the M3 models of the compilation units of a project, of which only the ones that changed
+     * since the last extraction are extracted again (see {@link M3Cache}).
+     */
     public ISet createM3sFromEclipseProject(ISourceLocation root, IBool errorRecovery, IEvaluatorContext ctx) {
-        LimitedTypeStore store = getM3Store();
+        LimitedTypeStore store = getSharedM3Store();
+        IJavaProject project = getProject(root);
+        ICompilationUnit[] files = getFiles(project);
+        if (files == null) {
+            files = new ICompilationUnit[0];
+        }
+
+        M3Cache m3Cache = M3Cache.getInstance();
+        String fingerprint;
+        try {
+            fingerprint = M3Cache.fingerprint(project, root, errorRecovery.getValue());
+        }
+        catch (JavaModelException e) {
+            throw RuntimeExceptionFactory.io(VF.string("Could not read the classpath of " + root.getAuthority()), null, null);
+        }
+
+        Map<String, M3Cache.Entry> index = m3Cache.loadIndex(project, fingerprint);
+        Map<String, M3Cache.Entry> updated = new ConcurrentHashMap<>();
+        Map<String, IValue> models = new ConcurrentHashMap<>();
+        Map<ICompilationUnit, String> contentHashes = new HashMap<>();
+        Map<ICompilationUnit, Long> generations = new HashMap<>();
+        List<ICompilationUnit> changed = new ArrayList<>();
+        List<ICompilationUnit> unchanged = new ArrayList<>();
+
+        for (ICompilationUnit file : files) {
+            M3Cache.Entry old = index.get(cachePath(project, file));
+            String hash = null;
+
+            // read before hashing, such that a change during the extraction keeps the file from being clean
+            generations.put(file, m3Cache.generation(project, file.getPath()));
+            try {
+                hash = old != null && m3Cache.isClean(project, file) ? old.contentHash : M3Cache.contentHash(file);
+            }
+            catch (JavaModelException e) {
+                // extract it again
+            }
+
+            contentHashes.put(file, hash);
+            (old != null && old.contentHash.equals(hash) ? unchanged : changed).add(file);
+        }
+
+        // files that were removed or added may change the bindings in the others
+        Set<String> removed = new HashSet<>(index.keySet());
+        for (ICompilationUnit file : files) {
+            removed.remove(cachePath(project, file));
+        }
+        AtomicBoolean apiChanged = new AtomicBoolean(!removed.isEmpty());
+
+        Map<String, ISourceLocation> cache = BindingCache.getInstance().forProject(project);
+        BiConsumer<ICompilationUnit, CompilationUnit> extract = (source, ast) -> {
+            String path = cachePath(project, source);
+            IValue m3 = convertToM3(store, cache, getLocation(root, project, source), ast);
+            String apiHash = M3Cache.apiHash(m3);
+            M3Cache.Entry old = index.get(path);
+
+            if (old == null || !old.apiHash.equals(apiHash)) {
+                apiChanged.set(true);
+            }
+
+            m3Cache.storeModel(project, path, m3);
+            String hash = contentHashes.get(source);
+            if (hash != null) {
+                updated.put(path, new M3Cache.Entry(hash, apiHash));
+            }
+            models.put(path, m3);
+        };
+
+        String jobName = "Creating M3 models for " + root.getAuthority();
+        compileFiles(project, changed.toArray(new ICompilationUnit[changed.size()]), true, errorRecovery.getValue(), jobName, extract);
 
+        List<ICompilationUnit> todo = new ArrayList<>();
+        if (apiChanged.get()) {
+            todo.addAll(unchanged);
+        }
+        else {
+            for (ICompilationUnit file : unchanged) {
+                String path = cachePath(project, file);
+                IValue m3 = m3Cache.loadModel(project, path, definitions);
+
+                if (m3 != null) {
+                    models.put(path, m3);
+                    updated.put(path, index.get(path));
+                }
+                else {
+                    todo.add(file);
+                }
+            }
+        }
+        compileFiles(project, todo.toArray(new ICompilationUnit[todo.size()]), true, errorRecovery.getValue(), jobName, extract);
+
+        for (String path : removed) {
+            m3Cache.removeModel(project, path);
+        }
+        m3Cache.storeIndex(project, fingerprint, updated);
+        for (ICompilationUnit file : files) {
+            if (updated.containsKey(cachePath(project, file))) {
+                m3Cache.markClean(project, file.getPath(), generations.get(file));
+            }
+        }
 
         ISetWriter result = VF.setWriter();
-        Map<String, ISourceLocation> cache = new HashMap<>();
-        compileAllFiles(root, true, errorRecovery.getValue(), (loc, ast) -> {
-            result.insert(convertToM3(store, cache, loc, ast));
-        });
+        result.insertAll(models.values());
         return result.done();
-        
+    }
+
+    private static String cachePath(IJavaProject project, ICompilationUnit file) {
+        return file.getPath().makeRelativeTo(project.getPath()).toString();
     }
 
     public IValue createAstFromEclipseFile(ISourceLocation file, IBool collectBindings, IBool errorRecovery, IEvaluatorContext ctx) {
-        LimitedTypeStore store = getM3Store();
+        LimitedTypeStore store = getSharedM3Store();
 
 
         CompilationUnit cu = compileOneFile(file, collectBindings.getValue(), errorRecovery.getValue());
-        Map<String, ISourceLocation> cache = new HashMap<>();
+        Map<String, ISourceLocation> cache = BindingCache.getInstance().forProject(getProject(file));
         return convertToAST(collectBindings, cache, file, cu, store);
     }
     
     public IValue createM3FromEclipseFile(ISourceLocation file, IBool errorRecovery, IEvaluatorContext ctx) {
-        LimitedTypeStore store = getM3Store();
+        LimitedTypeStore store = getSharedM3Store();
 
 
         CompilationUnit cu = compileOneFile(file, true, errorRecovery.getValue());
-        Map<String, ISourceLocation> cache = new HashMap<>();
+        Map<String, ISourceLocation> cache = BindingCache.getInstance().forProject(getProject(file));
         return convertToM3(store, cache, file, cu);
     }
     
-    private void compileAllFiles(ISourceLocation root, boolean collectBindings, boolean errorRecovery, BiConsumer<ISourceLocation, CompilationUnit> consumeCompiled) {
+    private void compileAllFiles(ISourceLocation root, boolean collectBindings, boolean errorRecovery, String jobName, BiConsumer<ISourceLocation, CompilationUnit> consumeCompiled) {
         IJavaProject project = getProject(root);
-        ASTParser parser = constructASTParser(collectBindings, project, errorRecovery); 
-        parser.createASTs(getFiles(project), new String[0], new ASTRequestor() {
+        ICompilationUnit[] files = getFiles(project);
+        if (files == null) {
+            files = new ICompilationUnit[0];
+        }
+
+        compileFiles(project, files, collectBindings, errorRecovery, jobName, (source, ast) -> {
+            consumeCompiled.accept(getLocation(root, project, source), ast);
+        });
+    }
+
+    /**
+     * Compiles the files of a project in batches, on a pool of parsers, such that only the ASTs and bindings
+     * of the batches in progress are in memory at the same time. The consumer is called on the threads
+     * of the pool, for every AST as soon as it is compiled, so it has to be thread-safe and should not
+     * keep the AST. Progress is reported to, and cancellation is checked with, the Rascal monitor.
+     */
+    private void compileFiles(IJavaProject project, ICompilationUnit[] files, boolean collectBindings, boolean errorRecovery, String jobName, BiConsumer<ICompilationUnit, CompilationUnit> consumeCompiled) {
+        if (files.length == 0) {
+            return;
+        }
+
+        AtomicBoolean canceled = new AtomicBoolean(false);
+        IProgressMonitor cancelation = new NullProgressMonitor() {
             @Override
-            public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
-                consumeCompiled.accept(getLocation(root, project, source), ast);
+            public boolean isCanceled() {
+                return canceled.get();
             }
-        }, null);
+        };
+
+        int batches = (files.length + BATCH_SIZE - 1) / BATCH_SIZE;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(PARSERS, batches)));
+        CompletionService<Integer> completed = new ExecutorCompletionService<>(pool);
+        boolean succeeded = false;
+
+        monitor.jobStart(jobName, 1, files.length);
+        try {
+            for (int from = 0; from < files.length; from += BATCH_SIZE) {
+                ICompilationUnit[] batch = Arrays.copyOfRange(files, from, Math.min(files.length, from + BATCH_SIZE));
+
+                completed.submit(() -> {
+                    if (canceled.get()) {
+                        return 0;
+                    }
+
+                    ASTParser parser = constructASTParser(collectBindings, project, errorRecovery);
+                    parser.createASTs(batch, new String[0], new ASTRequestor() {
+                        @Override
+                        public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+                            consumeCompiled.accept(source, ast);
+                        }
+                    }, cancelation);
+
+                    return batch.length;
+                });
+            }
+
+            for (int i = 0; i < batches; i++) {
+                Future<Integer> done = null;
+
+                while (done == null) {
+                    if (monitor.jobIsCanceled(jobName)) {
+                        canceled.set(true);
+                        throw RuntimeExceptionFactory.io(VF.string(jobName + " was canceled"), null, null);
+                    }
+                    done = completed.poll(100, TimeUnit.MILLISECONDS);
+                }
+
+                int compiled = done.get();
+                monitor.jobStep(jobName, "Compiled " + compiled + " files", compiled);
+            }
+
+            succeeded = true;
+        }
+        catch (InterruptedException e) {
+            canceled.set(true);
+            Thread.currentThread().interrupt();
+            throw RuntimeExceptionFactory.io(VF.string(jobName + " was interrupted"), null, null);
+        }
+        catch (ExecutionException e) {
+            canceled.set(true);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw RuntimeExceptionFactory.io(VF.string(jobName + " failed: " + e.getCause()), null, null);
+        }
+        finally {
+            pool.shutdownNow();
+            monitor.jobEnd(jobName, succeeded);
+        }
     }
 
     private CompilationUnit compileOneFile(ISourceLocation file, boolean collectBindings, boolean errorRecovery) {
@@ -0,0 +1,436 @@
+package org.rascalmpl.eclipse.library.lang.java.jdt.m3.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.values.ValueFactoryFactory;
+
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.IListWriter;
+import io.usethesource.vallang.IMap;
+import io.usethesource.vallang.IMapWriter;
+import io.usethesource.vallang.ISet;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IString;
+import io.usethesource.vallang.ITuple;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.IValueFactory;
+import io.usethesource.vallang.io.binary.stream.IValueInputStream;
+import io.usethesource.vallang.io.binary.stream.IValueOutputStream;
+import io.usethesource.vallang.io.binary.stream.IValueOutputStream.CompressionRate;
+import io.usethesource.vallang.type.TypeStore;
+
+/**
+ * Stores the M3 model of every compilation unit of a project in the state location of the plugin,
+ * such that composing the M3 of a project only has to extract the files that changed.
+ *
+ * Per project there is an index that maps the path of every compilation unit to the hash of its
+ * contents and the hash of its API (what it declares, see {@link #apiHash(IValue)}), and the
+ * fingerprint of everything else the models depend on: the classpath, the required projects and
+ * the options of the extraction. The index is dropped when the fingerprint differs. A model is
+ * reused if the contents of its file did not change and the API of no other file in the project did.
+ *
+ * Hashing the contents of all files would still read the whole project, so the cache also listens to
+ * the Java model: files that were not changed since their model was stored do not have to be hashed.
+ * Every change to a file increments its generation, and a file is only clean if its generation is still
+ * the one that was read before its contents were hashed. Files that are open as working copies are
+ * always hashed, because their buffer can change without notifying the Java model.
+ */
+class M3Cache implements IElementChangedListener {
+    private static final String FORMAT_VERSION = "2";
+    private static final String INDEX = "index.bin";
+    private static M3Cache instance;
+
+    private final IValueFactory vf = ValueFactoryFactory.getValueFactory();
+    private final Path folder;
+    /* per project, the number of changes to every file that changed in this session */
+    private final Map<String, Map<IPath, Long>> generations = new ConcurrentHashMap<>();
+    /* per project, the files of which a model was stored in this session, with the generation they were hashed in */
+    private final Map<String, Map<IPath, Long>> clean = new ConcurrentHashMap<>();
+
+    public static synchronized M3Cache getInstance() {
+        if (instance == null) {
+            instance = new M3Cache(Activator.getInstance().getStateLocation().append("m3").toFile().toPath());
+            JavaCore.addElementChangedListener(instance, ElementChangedEvent.POST_CHANGE);
+        }
+        return instance;
+    }
+
+    private M3Cache(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * The entry of a compilation unit in the index of a project.
+     */
+    static final class Entry {
+        final String contentHash;
+        final String apiHash;
+
+        Entry(String contentHash, String apiHash) {
+            this.contentHash = contentHash;
+            this.apiHash = apiHash;
+        }
+    }
+
+    /**
+     * Loads the index of a project.
+     *
+     * @return the entries by the project relative path of their compilation unit, empty if there is no
+     *         index or if it was stored for a different fingerprint
+     */
+    public Map<String, Entry> loadIndex(IJavaProject project, String fingerprint) {
+        Map<String, Entry> result = new ConcurrentHashMap<>();
+        Path index = projectFolder(project).resolve(INDEX);
+
+        if (!Files.exists(index)) {
+            return result;
+        }
+
+        try (IValueInputStream in = new IValueInputStream(new BufferedInputStream(Files.newInputStream(index)), vf, TypeStore::new)) {
+            ITuple stored = (ITuple) in.read();
+
+            if (!fingerprint.equals(((IString) stored.get(0)).getValue())) {
+                clear(project);
+                return result;
+            }
+
+            for (IValue path : (IMap) stored.get(1)) {
+                ITuple hashes = (ITuple) ((IMap) stored.get(1)).get(path);
+                result.put(((IString) path).getValue(), new Entry(((IString) hashes.get(0)).getValue(), ((IString) hashes.get(1)).getValue()));
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            Activator.log("dropping unreadable M3 cache of " + project.getElementName(), e);
+            clear(project);
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces the index of a project, after the models of its entries were stored.
+     */
+    public void storeIndex(IJavaProject project, String fingerprint, Map<String, Entry> entries) {
+        IMapWriter map = vf.mapWriter();
+        entries.forEach((path, entry) -> map.put(vf.string(path), vf.tuple(vf.string(entry.contentHash), vf.string(entry.apiHash))));
+
+        try {
+            write(projectFolder(project).resolve(INDEX), vf.tuple(vf.string(fingerprint), map.done()));
+        }
+        catch (IOException e) {
+            Activator.log("could not store M3 cache of " + project.getElementName(), e);
+        }
+    }
+
+    /**
+     * @return the stored model of a compilation unit, or null if it is not available
+     */
+    public IValue loadModel(IJavaProject project, String path, TypeStore store) {
+        Path file = modelFile(project, path);
+
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (IValueInputStream in = new IValueInputStream(new BufferedInputStream(Files.newInputStream(file)), vf, () -> store)) {
+            return in.read();
+        }
+        catch (IOException | RuntimeException e) {
+            Activator.log("could not read cached M3 of " + path, e);
+            return null;
+        }
+    }
+
+    public void storeModel(IJavaProject project, String path, IValue m3) {
+        try {
+            write(modelFile(project, path), m3);
+        }
+        catch (IOException e) {
+            Activator.log("could not store M3 of " + path, e);
+        }
+    }
+
+    public void removeModel(IJavaProject project, String path) {
+        try {
+            Files.deleteIfExists(modelFile(project, path));
+        }
+        catch (IOException e) {
+            Activator.log("could not remove cached M3 of " + path, e);
+        }
+    }
+
+    /**
+     * Writes to a temporary file first, such that readers never see a partially written file.
+     */
+    private void write(Path file, IValue value) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+        try {
+            try (IValueOutputStream out = new IValueOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)), vf, CompressionRate.Fast)) {
+                out.write(value);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the number of changes to a file in this session, to be read before its contents are hashed
+     */
+    public long generation(IJavaProject project, IPath file) {
+        Long generation = generations.computeIfAbsent(project.getElementName(), p -> new ConcurrentHashMap<>()).get(file);
+        return generation != null ? generation : 0;
+    }
+
+    /**
+     * @return true if the file was not changed since its model was stored in this session, such that its
+     *         contents do not have to be hashed again
+     */
+    public boolean isClean(IJavaProject project, ICompilationUnit unit) {
+        Map<IPath, Long> files = clean.get(project.getElementName());
+        Long hashed = files != null ? files.get(unit.getPath()) : null;
+        return hashed != null && !unit.isWorkingCopy() && hashed == generation(project, unit.getPath());
+    }
+
+    /**
+     * Records that the stored model of a file belongs to the contents it had in the given generation,
+     * which is only clean as long as the file is not changed after that.
+     */
+    public void markClean(IJavaProject project, IPath file, long generation) {
+        clean.computeIfAbsent(project.getElementName(), p -> new ConcurrentHashMap<>()).put(file, generation);
+    }
+
+    /**
+     * Removes all cached models of a project.
+     */
+    public void clear(IJavaProject project) {
+        clean.remove(project.getElementName());
+        generations.remove(project.getElementName());
+
+        Path projectFolder = projectFolder(project);
+        if (!Files.exists(projectFolder)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(projectFolder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+        catch (IOException e) {
+            Activator.log("could not clear M3 cache of " + project.getElementName(), e);
+        }
+    }
+
+    private Path projectFolder(IJavaProject project) {
+        return folder.resolve(project.getElementName());
+    }
+
+    private Path modelFile(IJavaProject project, String path) {
+        return projectFolder(project).resolve(sha1(path.getBytes(StandardCharsets.UTF_8)) + ".m3");
+    }
+
+    /**
+     * @return the hash of the source of a compilation unit as the parser sees it, which is the buffer
+     *         of its working copy if it is open in an editor
+     */
+    public static String contentHash(ICompilationUnit unit) throws JavaModelException {
+        String source = unit.getSource();
+        return source != null ? sha1(source.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * Hashes the parts of an M3 model that other compilation units can depend on: the names of its
+     * declarations (without their source locations, which move with every edit), their types and
+     * modifiers, and the type hierarchy. If this changes, the bindings in the models of other files
+     * may change too.
+     *
+     * The relations are serialized as sorted lists, such that equal APIs have the same digest regardless
+     * of the order in which the sets happen to iterate.
+     */
+    public static String apiHash(IValue m3) {
+        IValueFactory vf = ValueFactoryFactory.getValueFactory();
+        Map<String, IValue> parameters = ((IConstructor) m3).asWithKeywordParameters().getParameters();
+        IValue declarations = parameters.get("declarations");
+
+        IListWriter api = vf.listWriter();
+        api.append(sorted(vf, declarations == null ? null : ((ISet) declarations).asRelation().project(0)));
+        for (String relation : new String[] { "types", "modifiers", "extends", "implements", "annotations" }) {
+            api.append(sorted(vf, parameters.get(relation)));
+        }
+
+        MessageDigest digest = newDigest();
+        try (IValueOutputStream out = new IValueOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest), vf, CompressionRate.None)) {
+            out.write(api.done());
+        }
+        catch (IOException e) {
+            // the stream does not write anywhere
+            throw new RuntimeException(e);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static IValue sorted(IValueFactory vf, IValue set) {
+        List<IValue> elements = new ArrayList<>();
+        if (set != null) {
+            ((ISet) set).forEach(elements::add);
+        }
+
+        elements.sort(Comparator.comparing(IValue::toString));
+        IListWriter result = vf.listWriter();
+        result.appendAll(elements);
+        return result.done();
+    }
+
+    /**
+     * Fingerprints everything apart from the compilation units themselves that determines their models:
+     * the root location the models refer to, the extraction options, the resolved classpath with the time
+     * stamps of its archives, and the Java sources of the required projects.
+     */
+    public static String fingerprint(IJavaProject project, ISourceLocation root, boolean errorRecovery) throws JavaModelException {
+        StringBuilder b = new StringBuilder();
+        b.append(FORMAT_VERSION).append('\n');
+        b.append(root).append('\n');
+        b.append(errorRecovery).append('\n');
+        b.append(project.getOption(JavaCore.COMPILER_COMPLIANCE, true)).append('\n');
+        b.append(project.getOption(JavaCore.COMPILER_SOURCE, true)).append('\n');
+
+        for (IClasspathEntry entry : project.getResolvedClasspath(true)) {
+            b.append(entry.getEntryKind()).append(' ').append(entry.getPath());
+
+            switch (entry.getEntryKind()) {
+                case IClasspathEntry.CPE_LIBRARY:
+                    IResource resource = project.getProject().getWorkspace().getRoot().findMember(entry.getPath());
+                    File archive = resource != null && resource.getLocation() != null ? resource.getLocation().toFile() : entry.getPath().toFile();
+                    b.append(' ').append(archive.lastModified()).append(' ').append(archive.length());
+                    break;
+                case IClasspathEntry.CPE_PROJECT:
+                    IProject required = project.getProject().getWorkspace().getRoot().getProject(entry.getPath().lastSegment());
+                    b.append(' ').append(sourcesStamp(required));
+                    break;
+            }
+
+            b.append('\n');
+        }
+
+        return sha1(b.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the number of Java files in a project and their latest time stamp
+     */
+    private static String sourcesStamp(IProject project) {
+        long[] stamp = new long[] { 0, 0 };
+
+        if (project.isAccessible()) {
+            try {
+                project.accept(proxy -> {
+                    if (proxy.getType() == IResource.FILE && proxy.getName().endsWith(".java")) {
+                        stamp[0]++;
+                        stamp[1] = Math.max(stamp[1], proxy.requestResource().getLocalTimeStamp());
+                    }
+                    return true;
+                }, IResource.NONE);
+            }
+            catch (CoreException e) {
+                Activator.log("could not fingerprint " + project.getName(), e);
+            }
+        }
+
+        return stamp[0] + "@" + stamp[1];
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String sha1(byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder b = new StringBuilder(bytes.length * 2);
+        for (byte x : bytes) {
+            b.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+        }
+        return b.toString();
+    }
+
+    @Override
+    public void elementChanged(ElementChangedEvent event) {
+        if (!generations.isEmpty()) {
+            visit(event.getDelta());
+        }
+    }
+
+    private void visit(IJavaElementDelta delta) {
+        IJavaElement element = delta.getElement();
+
+        switch (element.getElementType()) {
+            case IJavaElement.JAVA_PROJECT:
+                if (delta.getKind() == IJavaElementDelta.REMOVED) {
+                    clear((IJavaProject) element);
+                    return;
+                }
+                if ((delta.getFlags() & (IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+                    // the fingerprint will tell whether the stored models are still valid
+                    clean.remove(element.getElementName());
+                    return;
+                }
+                break;
+            case IJavaElement.COMPILATION_UNIT:
+                Map<IPath, Long> files = generations.get(element.getJavaProject().getElementName());
+                if (files != null) {
+                    files.merge(element.getPath(), 1L, Long::sum);
+                }
+                return;
+        }
+
+        if ((delta.getFlags() & IJavaElementDelta.F_REMOVED_FROM_CLASSPATH) != 0) {
+            clean.remove(element.getJavaProject().getElementName());
+            return;
+        }
+
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            visit(child);
+        }
+    }
+}
@@ -15,9 +15,14 @@ package org.rascalmpl.eclipse.library.util;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -27,6 +32,7 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -38,6 +44,7 @@ import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelExtension;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorDescriptor;
 import org.eclipse.ui.IEditorInput;
@@ -135,8 +142,6 @@ public class Editors {
 						} else { //
 							previousList = lines;
 						}
-						// First delete old markers
-
 						IEditorInput input = editor.getEditorInput();
 						IResource inputResource = ResourceUtil.getResource(input);
 						
@@ -145,82 +150,32 @@ public class Editors {
 							return; 
 						}
 						
-						for (IMarker marker : inputResource.findMarkers(RASCAL_MARKER, true, IResource.DEPTH_INFINITE)) {
-							if (marker.exists()) {
-								marker.delete();
-							}
-						}
-
-						// ... and old annotations
 						IAnnotationModel annotationModel = documentProvider.getAnnotationModel(editor.getEditorInput());
-
-						// Lock on the annotation model
-						Object lockObject = ((ISynchronizable) annotationModel).getLockObject();
-						synchronized (lockObject) {
-							Iterator<Annotation> iter = annotationModel.getAnnotationIterator();
-							while (iter.hasNext()) {
-								Annotation anno = iter.next();
-								if (anno.getType().startsWith("rascal.highlight")) {
-									annotationModel.removeAnnotation(anno);
-								}
-							}
-						}
-
+						
+						List<LineDecoration> newMarkers = new ArrayList<>();
+						Map<LineDecoration, List<Position>> newAnnotations = new HashMap<>();
+						
 						for (IValue v : lines) {
-							IConstructor lineDecor = (IConstructor) v;
-							int lineNumber = ((IInteger) lineDecor.get(0)).intValue();
-							String msg = ((IString) lineDecor.get(1)).getValue();
-							int severity = 0;
-							boolean useMarker = true;
-
-							String name = lineDecor.getName();
-							if (name.equals("info")) {
-								severity = IMarker.SEVERITY_INFO;
-							}
-							else if (name.equals("warning")) {
-								severity = IMarker.SEVERITY_WARNING;
-							}
-							else if (name.equals("error")) {
-								severity = IMarker.SEVERITY_ERROR;
+							LineDecoration decoration = new LineDecoration((IConstructor) v);
+							
+							if (decoration.isMarker()) {
+								newMarkers.add(decoration);
 							}
 							else {
-								useMarker = false;
-							}
-
-							if (useMarker) { // Add a marker
-								IMarker marker = inputResource.createMarker(RASCAL_MARKER);
-								marker.setAttribute(IMarker.LINE_NUMBER, lineNumber);
-								marker.setAttribute(IMarker.MESSAGE, msg);
-								marker.setAttribute(IMarker.LOCATION, "line " + lineNumber);
-								marker.setAttribute(IMarker.SEVERITY, severity);
-							} else { // Add an annotation
-								int highlightKind = 0;
-
-								if (lineDecor.arity() > 2) {
-									highlightKind = ((IInteger) lineDecor.get(2)).intValue();
-									if (highlightKind < 0) {
-										highlightKind = 0;
-									}
-									if (highlightKind >= LINE_HIGHLIGHT_LENGTH) {
-										highlightKind = LINE_HIGHLIGHT_LENGTH - 1;
-									}
-								}
-
-								String highlightName = RASCAL_LINE_HIGHLIGHT[highlightKind];
 								try {
 									// line count internally starts with 0, and
 									// not with 1 like in GUI
-									IRegion lineInfo = document.getLineInformation(lineNumber - 1);
-									synchronized (lockObject) {
-										Annotation currentLine = new Annotation(highlightName, true, msg);
-										Position currentPosition = new Position(lineInfo.getOffset(), lineInfo.getLength());
-										annotationModel.addAnnotation(currentLine, currentPosition);
-									}
+									IRegion lineInfo = document.getLineInformation(decoration.line - 1);
+									newAnnotations.computeIfAbsent(decoration, d -> new ArrayList<>()).add(new Position(lineInfo.getOffset(), lineInfo.getLength()));
 								} catch (org.eclipse.jface.text.BadLocationException e) {
 									// Ignore, lineNumber may just not exist in file
 								}
 							}
 						}
+						
+						updateMarkers(inputResource, newMarkers);
+						updateAnnotations(document, annotationModel, newAnnotations);
+						
 						if (firstTime) {
 							firstTime = false;
 							if (loc.hasOffsetLength() && editorPart instanceof ITextEditor) {
@@ -236,6 +191,115 @@ public class Editors {
 			}
 		}
 
+		/**
+		 * Removes the markers which are not in the new list and only creates the ones that
+		 * are not there yet, all in one workspace operation. Each existing marker accounts for
+		 * one occurrence of its decoration, so duplicate decorations get as many markers.
+		 */
+		private void updateMarkers(IResource resource, List<LineDecoration> decorations) throws CoreException {
+			IWorkspace workspace = ResourcesPlugin.getWorkspace();
+			
+			workspace.run(monitor -> {
+				Map<LineDecoration, Integer> todo = new HashMap<>();
+				for (LineDecoration decoration : decorations) {
+					todo.merge(decoration, 1, Integer::sum);
+				}
+				
+				for (IMarker marker : resource.findMarkers(RASCAL_MARKER, true, IResource.DEPTH_INFINITE)) {
+					if (!marker.exists()) {
+						continue;
+					}
+					
+					LineDecoration existing = new LineDecoration(marker);
+					
+					Integer count = todo.get(existing);
+					
+					if (marker.getResource().equals(resource) && count != null && count > 0) {
+						todo.put(existing, count - 1);
+						continue; // already there
+					}
+					
+					marker.delete();
+				}
+				
+				for (Entry<LineDecoration, Integer> decoration : todo.entrySet()) {
+					LineDecoration d = decoration.getKey();
+					
+					for (int i = 0; i < decoration.getValue(); i++) {
+						IMarker marker = resource.createMarker(RASCAL_MARKER);
+						marker.setAttributes(
+							new String[] { IMarker.LINE_NUMBER, IMarker.MESSAGE, IMarker.LOCATION, IMarker.SEVERITY },
+							new Object[] { d.line, d.msg, "line " + d.line, d.severity });
+					}
+				}
+			}, workspace.getRuleFactory().markerRule(resource), IWorkspace.AVOID_UPDATE, null);
+		}
+		
+		/**
+		 * Replaces the highlight annotations which are not in the new set, and keeps the ones
+		 * that did not change, with a single update of the annotation model.
+		 */
+		private void updateAnnotations(IDocument document, IAnnotationModel annotationModel, Map<LineDecoration, List<Position>> decorations) {
+			// Lock on the annotation model
+			Object lockObject = ((ISynchronizable) annotationModel).getLockObject();
+			synchronized (lockObject) {
+				Map<LineDecoration, List<Position>> todo = new HashMap<>();
+				for (Entry<LineDecoration, List<Position>> decoration : decorations.entrySet()) {
+					todo.put(decoration.getKey(), new ArrayList<>(decoration.getValue()));
+				}
+				List<Annotation> toRemove = new ArrayList<>();
+				
+				Iterator<Annotation> iter = annotationModel.getAnnotationIterator();
+				while (iter.hasNext()) {
+					Annotation anno = iter.next();
+					if (anno.getType().startsWith("rascal.highlight")) {
+						Position position = annotationModel.getPosition(anno);
+						
+						if (position != null && !position.isDeleted()) {
+							try {
+								LineDecoration existing = new LineDecoration(anno, document.getLineOfOffset(position.getOffset()) + 1);
+								List<Position> wanted = todo.get(existing);
+								
+								if (wanted != null && wanted.remove(position)) {
+									if (wanted.isEmpty()) {
+										todo.remove(existing);
+									}
+									continue; // already there
+								}
+							} catch (org.eclipse.jface.text.BadLocationException e) {
+								// the annotation is out of date, so it is removed
+							}
+						}
+						
+						toRemove.add(anno);
+					}
+				}
+				
+				if (toRemove.isEmpty() && todo.isEmpty()) {
+					return;
+				}
+				
+				Map<Annotation, Position> toAdd = new HashMap<>();
+				for (Entry<LineDecoration, List<Position>> decoration : todo.entrySet()) {
+					for (Position position : decoration.getValue()) {
+						toAdd.put(new Annotation(decoration.getKey().highlight, true, decoration.getKey().msg), position);
+					}
+				}
+				
+				if (annotationModel instanceof IAnnotationModelExtension) {
+					((IAnnotationModelExtension) annotationModel).replaceAnnotations(toRemove.toArray(new Annotation[toRemove.size()]), toAdd);
+				}
+				else {
+					for (Annotation anno : toRemove) {
+						annotationModel.removeAnnotation(anno);
+					}
+					for (Entry<Annotation, Position> anno : toAdd.entrySet()) {
+						annotationModel.addAnnotation(anno.getKey(), anno.getValue());
+					}
+				}
+			}
+		}
+
 		private IEditorInput getEditorInput(URI uri) {
 			String scheme = uri.getScheme();
 			
@@ -263,6 +327,92 @@ public class Editors {
 		}
 	}
 
+	/**
+	 * A line decoration as it is shown in the editor: either a marker with a severity or a
+	 * highlight annotation of some kind. Two decorations are the same if they have the same
+	 * line, kind and message, but a list may contain the same decoration more than once.
+	 */
+	private static final class LineDecoration {
+		private final int line;
+		private final String msg;
+		private final int severity;
+		private final String highlight;
+
+		public LineDecoration(IConstructor lineDecor) {
+			this.line = ((IInteger) lineDecor.get(0)).intValue();
+			this.msg = ((IString) lineDecor.get(1)).getValue();
+
+			String name = lineDecor.getName();
+			if (name.equals("info")) {
+				severity = IMarker.SEVERITY_INFO;
+			}
+			else if (name.equals("warning")) {
+				severity = IMarker.SEVERITY_WARNING;
+			}
+			else if (name.equals("error")) {
+				severity = IMarker.SEVERITY_ERROR;
+			}
+			else {
+				severity = -1;
+			}
+
+			if (severity == -1) {
+				int highlightKind = 0;
+
+				if (lineDecor.arity() > 2) {
+					highlightKind = ((IInteger) lineDecor.get(2)).intValue();
+					if (highlightKind < 0) {
+						highlightKind = 0;
+					}
+					if (highlightKind >= LINE_HIGHLIGHT_LENGTH) {
+						highlightKind = LINE_HIGHLIGHT_LENGTH - 1;
+					}
+				}
+
+				this.highlight = RASCAL_LINE_HIGHLIGHT[highlightKind];
+			}
+			else {
+				this.highlight = null;
+			}
+		}
+
+		public LineDecoration(IMarker marker) {
+			this.line = marker.getAttribute(IMarker.LINE_NUMBER, -1);
+			this.msg = marker.getAttribute(IMarker.MESSAGE, "");
+			this.severity = marker.getAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO);
+			this.highlight = null;
+		}
+
+		public LineDecoration(Annotation annotation, int line) {
+			this.line = line;
+			this.msg = annotation.getText() != null ? annotation.getText() : "";
+			this.severity = -1;
+			this.highlight = annotation.getType();
+		}
+
+		public boolean isMarker() {
+			return highlight == null;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LineDecoration)) {
+				return false;
+			}
+
+			LineDecoration other = (LineDecoration) obj;
+			return line == other.line
+				&& severity == other.severity
+				&& Objects.equals(highlight, other.highlight)
+				&& msg.equals(other.msg);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(line, severity, highlight, msg);
+		}
+	}
+
 	private class OneTimeDecoratorRunner extends DecoratorRunnerBase {
 		private final IList lineInfo;
 
@@ -327,7 +477,7 @@ public class Editors {
 	 * Local declarations for annotations and markers
 	 */
 
-	private final int LINE_HIGHLIGHT_LENGTH = 5;
+	private final static int LINE_HIGHLIGHT_LENGTH = 5;
 
 	// This following list of annotations has to be in sync with the annotations
 	// declared in plugin.xml
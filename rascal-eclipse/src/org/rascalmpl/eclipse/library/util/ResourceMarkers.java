@@ -11,25 +11,34 @@
 package org.rascalmpl.eclipse.library.util;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.ui.PlatformUI;
-import org.eclipse.ui.actions.WorkspaceModifyOperation;
-import org.eclipse.ui.progress.IProgressService;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.exceptions.RuntimeExceptionFactory;
-import org.rascalmpl.exceptions.Throw;
+import org.rascalmpl.interpreter.Evaluator;
+import org.rascalmpl.interpreter.IEvaluatorContext;
 import org.rascalmpl.uri.URIResolverRegistry;
 import org.rascalmpl.uri.URIResourceResolver;
+import org.rascalmpl.values.functions.IFunction;
 
 import io.usethesource.vallang.IConstructor;
 import io.usethesource.vallang.ISet;
@@ -76,142 +85,174 @@ public class ResourceMarkers {
 	  }
 	}
 
-	private void removeMessageMarkers(ISet markers) {
+	public void addMessageMarkers(final ISet markers) {
+		addMessageMarkers(markers, null, null);
+	}
+	
+	/**
+	 * Replaces the markers of all files that the messages are reported on, in a background job.
+	 * The job holds a rule for exactly these files and creates the markers of every file in
+	 * a single workspace operation, so neither the UI nor the rest of the workspace has to wait
+	 * for it. When all markers are there, the callback is called (if any) under the lock of the
+	 * evaluator, as any other call into it from outside its own thread.
+	 */
+	public void addMessageMarkers(final ISet markers, final IFunction whenDone, final IEvaluatorContext ctx) {
+		final Map<IFile, List<IConstructor>> byFile = new LinkedHashMap<>();
+		
 		for (IValue msg : markers) {
 			IConstructor marker = (IConstructor) msg;
-			if (! marker.getType().getName().equals("Message"))
+			
+			if (! marker.getType().getName().equals("Message")) {
 				throw RuntimeExceptionFactory.illegalArgument(marker, null, null);
-			removeMessageMarkers((ISourceLocation)marker.get(1));
+			}
+			
+			IResource resource = URIResourceResolver.getResource(physical((ISourceLocation) marker.get(1)));
+			
+			if (resource instanceof IFile) {
+				byFile.computeIfAbsent((IFile) resource, f -> new ArrayList<>()).add(marker);
+			}
 		}
-		return;
-	}
-	
-	public void addMessageMarkers(final ISet markers) {
-		// we need two locks, one for  the UI and one for the resources
-		// because we know we might need to lock a lot of resources we lock the entire workspace here
-		// and prevent lock starvation where for every file and every ui operation to add a marker we 
-		// need to get a new lock. The resulting code is complex but its fast.
 		
-		final WorkspaceModifyOperation wmo = new WorkspaceModifyOperation(ResourcesPlugin.getWorkspace().getRoot()) {
-			public void execute(IProgressMonitor monitor) {
-				removeMessageMarkers(markers);
+		if (byFile.isEmpty()) {
+			if (whenDone != null) {
+				whenDone.call();
+			}
+			return;
+		}
+		
+		final Evaluator evaluator = ctx != null ? ctx.getEvaluator() : null;
+		
+		Job job = new Job("Adding message markers") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				IWorkspace workspace = ResourcesPlugin.getWorkspace();
+				monitor.beginTask("Adding message markers", byFile.size());
 				
-				for (IValue msg : markers) {
-					IConstructor marker = (IConstructor) msg;
-					
-					if (! marker.getType().getName().equals("Message")) {
-					  throw RuntimeExceptionFactory.illegalArgument(marker, null, null);
+				try {
+					for (Entry<IFile, List<IConstructor>> entry : byFile.entrySet()) {
+						if (monitor.isCanceled()) {
+							return Status.CANCEL_STATUS;
+						}
+						
+						IFile file = entry.getKey();
+						
+						if (file.exists()) {
+							workspace.run(m -> createMarkers(file, entry.getValue()), file, IWorkspace.AVOID_UPDATE, null);
+						}
+						
+						monitor.worked(1);
 					}
-					
-					ISourceLocation loc = (ISourceLocation)marker.get(1);
-					try { 
-						loc = URIResolverRegistry.getInstance().logicalToPhysical(loc);
+				}
+				catch (CoreException e) {
+					Activator.log("could not add markers", e);
+					return e.getStatus();
+				}
+				finally {
+					monitor.done();
+				}
+				
+				if (whenDone != null && evaluator != null) {
+					try {
+						synchronized (evaluator) {
+							whenDone.call();
+						}
 					}
-					catch (IOException e) {
-						// couldn't resolve it, must be a physical one already.
+					catch (RuntimeException e) {
+						Activator.log("could not call back after adding markers", e);
 					}
-					
-					IResource resource = URIResourceResolver.getResource(loc);
-					
-					if (resource instanceof IFile) {
-					  IFile file = (IFile) resource;
-					  
-					  try {
-					    int severity = IMarker.SEVERITY_INFO;
-					    if (marker.getName().equals("error")) {
-					        severity = IMarker.SEVERITY_ERROR;
-					    }
-					    else if (marker.getName().equals("warning")) {
-					        severity = IMarker.SEVERITY_WARNING;
-					    }
+				}
+				
+				return Status.OK_STATUS;
+			}
+		};
+		
+		job.setRule(MultiRule.combine(byFile.keySet().toArray(new ISchedulingRule[byFile.size()])));
+		job.schedule();
+	}
+	
+	private static ISourceLocation physical(ISourceLocation loc) {
+		try { 
+			return URIResolverRegistry.getInstance().logicalToPhysical(loc);
+		}
+		catch (IOException e) {
+			// couldn't resolve it, must be a physical one already.
+			return loc;
+		}
+	}
+	
+	private static void createMarkers(IFile file, List<IConstructor> markers) throws CoreException {
+		file.deleteMarkers(IRascalResources.ID_RASCAL_MARKER, false, IResource.DEPTH_ZERO);
+		
+		for (IConstructor marker : markers) {
+			int severity = IMarker.SEVERITY_INFO;
+			if (marker.getName().equals("error")) {
+				severity = IMarker.SEVERITY_ERROR;
+			}
+			else if (marker.getName().equals("warning")) {
+				severity = IMarker.SEVERITY_WARNING;
+			}
 
-					    IString markerMessage = (IString)marker.get(0);
-					    ISourceLocation markerLocation = loc;
+			IString markerMessage = (IString)marker.get(0);
+			ISourceLocation markerLocation = physical((ISourceLocation) marker.get(1));
 
-					    if (markerLocation.hasLineColumn()) {
-					        String[] attributeNames = new String[] {
-					                IMarker.LINE_NUMBER, 
-					                IMarker.CHAR_START, 
-					                IMarker.CHAR_END, 
-					                IMarker.MESSAGE, 
-					                IMarker.PRIORITY, 
-					                IMarker.SEVERITY
-					        };
+			if (markerLocation.hasLineColumn()) {
+				String[] attributeNames = new String[] {
+						IMarker.LINE_NUMBER, 
+						IMarker.CHAR_START, 
+						IMarker.CHAR_END, 
+						IMarker.MESSAGE, 
+						IMarker.PRIORITY, 
+						IMarker.SEVERITY
+				};
 
-					        Object[] values = new Object[] {
-					                        markerLocation.getBeginLine(), 
-					                        markerLocation.getOffset(), 
-					                        markerLocation.getOffset() + markerLocation.getLength(), 
-					                        markerMessage.getValue(), 
-					                        IMarker.PRIORITY_HIGH, 
-					                        severity
-					                };
+				Object[] values = new Object[] {
+						markerLocation.getBeginLine(), 
+						markerLocation.getOffset(), 
+						markerLocation.getOffset() + markerLocation.getLength(), 
+						markerMessage.getValue(), 
+						IMarker.PRIORITY_HIGH, 
+						severity
+				};
 
-					        IMarker m = file.createMarker(IRascalResources.ID_RASCAL_MARKER);
-					        m.setAttributes(attributeNames, values);
-					    }
-					    else if (markerLocation.hasOffsetLength()) {
-                            String[] attributeNames = new String[] {
-                                    IMarker.CHAR_START, 
-                                    IMarker.CHAR_END, 
-                                    IMarker.MESSAGE, 
-                                    IMarker.PRIORITY, 
-                                    IMarker.SEVERITY
-                            };
+				IMarker m = file.createMarker(IRascalResources.ID_RASCAL_MARKER);
+				m.setAttributes(attributeNames, values);
+			}
+			else if (markerLocation.hasOffsetLength()) {
+				String[] attributeNames = new String[] {
+						IMarker.CHAR_START, 
+						IMarker.CHAR_END, 
+						IMarker.MESSAGE, 
+						IMarker.PRIORITY, 
+						IMarker.SEVERITY
+				};
 
-                            Object[] values = new Object[] {
-                                    markerLocation.getOffset(), 
-                                    markerLocation.getOffset() + markerLocation.getLength(), 
-                                    markerMessage.getValue(), 
-                                    IMarker.PRIORITY_HIGH, 
-                                    severity
-                            };
+				Object[] values = new Object[] {
+						markerLocation.getOffset(), 
+						markerLocation.getOffset() + markerLocation.getLength(), 
+						markerMessage.getValue(), 
+						IMarker.PRIORITY_HIGH, 
+						severity
+				};
 
-                            IMarker m = file.createMarker(IRascalResources.ID_RASCAL_MARKER);
-                            m.setAttributes(attributeNames, values);
-                        }
-					    else {
-					        String[] attributeNames = new String[] {
-                                    IMarker.MESSAGE, 
-                                    IMarker.PRIORITY, 
-                                    IMarker.SEVERITY
-                            };
+				IMarker m = file.createMarker(IRascalResources.ID_RASCAL_MARKER);
+				m.setAttributes(attributeNames, values);
+			}
+			else {
+				String[] attributeNames = new String[] {
+						IMarker.MESSAGE, 
+						IMarker.PRIORITY, 
+						IMarker.SEVERITY
+				};
 
-                            Object[] values = new Object[] {
-                                            markerMessage.getValue(), 
-                                            IMarker.PRIORITY_HIGH, 
-                                            severity
-                            };
+				Object[] values = new Object[] {
+						markerMessage.getValue(), 
+						IMarker.PRIORITY_HIGH, 
+						severity
+				};
 
-                            IMarker m = file.createMarker(IRascalResources.ID_RASCAL_MARKER);
-                            m.setAttributes(attributeNames, values);
-					    }
-					  } 
-					  catch (CoreException ce) {
-					    throw RuntimeExceptionFactory.illegalArgument(loc, ce.getMessage());
-					  }
-					}
-				}
-			}
-		};
-		
-		PlatformUI.getWorkbench().getDisplay().syncExec(new Runnable() {
-			@Override
-			public void run() {
-				IProgressService ips = PlatformUI.getWorkbench().getProgressService();
-				try {
-					ips.run(false, true, wmo);
-				} catch (InvocationTargetException e) {
-					if (e.getTargetException() instanceof Throw) {
-						throw (Throw) e.getTargetException();
-					}
-					else {
-						throw RuntimeExceptionFactory.javaException(e.getTargetException(), null, null);
-					}
-				} catch (InterruptedException e) {
-					Activator.getInstance().logException("??", e);
-				}
+				IMarker m = file.createMarker(IRascalResources.ID_RASCAL_MARKER);
+				m.setAttributes(attributeNames, values);
 			}
-		});
+		}
 	}
 }
@@ -21,12 +21,15 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.function.Consumer;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
@@ -69,6 +72,7 @@ public class ProjectEvaluatorFactory {
 	
 	private final WeakHashMap<IProject, Evaluator> parserForProject = new WeakHashMap<IProject, Evaluator>();
 	private final WeakHashMap<IProject, ModuleReloader> reloaderForProject = new WeakHashMap<IProject, ModuleReloader>();
+	private final Map<IProject, List<ISourceLocation>> searchPathForProject = Collections.synchronizedMap(new WeakHashMap<IProject, List<ISourceLocation>>());
 	private final OutputStream out;
 	private final OutputStream err;
 	
@@ -88,11 +92,17 @@ public class ProjectEvaluatorFactory {
 	public void clear() {
 		reloaderForProject.clear();
 		parserForProject.clear();
+		searchPathForProject.clear();
 	}
 	
 	public void resetParser(IProject project) {
 		parserForProject.remove(project);
 		reloaderForProject.remove(project);
+		searchPathForProject.remove(project);
+	}
+	
+	public void resetSearchPath(IProject project) {
+		searchPathForProject.remove(project);
 	}
 	
 	public RascalSearchPath getProjectSearchPath(IProject project) {
@@ -100,6 +110,51 @@ public class ProjectEvaluatorFactory {
 		return eval.getRascalResolver();
 	}
 	
+	/**
+	 * Computes the roots of the search path that an evaluator for the project would have, from the
+	 * RASCAL.MF files of the project and its libraries and from its pom.xml, so without creating an evaluator. 
+	 * The result is cached until the project is reset.
+	 */
+	public List<ISourceLocation> getProjectSearchPathRoots(IProject project) {
+		List<ISourceLocation> roots = searchPathForProject.get(project);
+		
+		if (roots == null) {
+			List<ISourceLocation> result = new ArrayList<>();
+			
+			// in the same order as configure(IProject, Evaluator)
+			try {
+				addProjectToSearchPath(project, result::add);
+			}
+			catch (URISyntaxException usex) {
+				Activator.getInstance().logException("could not construct search path", usex);
+			}
+			result.add(URIUtil.rootLocation("test-modules"));
+			
+			if (!isRascalBootstrapProject(project)) {
+				result.add(URIUtil.rootLocation("std"));
+				addBundleToSearchPath(Platform.getBundle(IRascalResources.ID_RASCAL_ECLIPSE_PLUGIN), result::add);
+			}
+			
+			// the libraries of a maven project, as collectClassPathForProject adds them
+			if (project.getFile("pom.xml").exists()) {
+				try {
+					ISourceLocation ploc = URIUtil.createFileLocation(project.getRawLocation().makeAbsolute().toOSString());
+					PathConfig pcfg = PathConfig.fromSourceProjectRascalManifest(ploc, RascalConfigMode.INTERPETER);
+					
+					pcfg.getClassloaders().stream().map(v -> (ISourceLocation) v).filter(cl -> "file".equals(cl.getScheme())).forEach(cl -> addJarToSearchPath(cl, result::add));
+				}
+				catch (IOException | URISyntaxException e) {
+					Activator.log(e.getMessage(), e);
+				}
+			}
+			
+			roots = Collections.unmodifiableList(result);
+			searchPathForProject.put(project, roots);
+		}
+		
+		return roots;
+	}
+	
 	public Evaluator getEvaluator(IProject project) {
 		Evaluator parser = getOrCreateEvaluator(project);
 		assert reloaderForProject.get(project) != null;
@@ -315,9 +370,14 @@ public class ProjectEvaluatorFactory {
 
 	public static void addProjectToSearchPath(IProject project, Evaluator eval)
 			throws URISyntaxException {
+		addProjectToSearchPath(project, eval::addRascalSearchPath);
+	}
+	
+	private static void addProjectToSearchPath(IProject project, Consumer<ISourceLocation> searchPath)
+			throws URISyntaxException {
 		RascalEclipseManifest mf = new RascalEclipseManifest();
 		for (String root : mf.getSourceRoots(project)) {
-			eval.addRascalSearchPath(ProjectURIResolver.constructProjectURI(project, project.getFile(root).getProjectRelativePath()));
+			searchPath.accept(ProjectURIResolver.constructProjectURI(project, project.getFile(root).getProjectRelativePath()));
 		}
 		
 		List<String> requiredLibraries = mf.getRequiredLibraries(project);
@@ -325,22 +385,22 @@ public class ProjectEvaluatorFactory {
 			for (String lib : requiredLibraries) {
 			    try {
 			        if (lib.startsWith("|")) {
-			            ISourceLocation library = (ISourceLocation) new StandardTextReader().read(eval.getValueFactory(), new StringReader(lib));
+			            ISourceLocation library = (ISourceLocation) new StandardTextReader().read(ValueFactoryFactory.getValueFactory(), new StringReader(lib));
 			            ISourceLocation projectLib = URIUtil.changeScheme(library, "project");
 			            
 			            if (URIResolverRegistry.getInstance().exists(projectLib)) {
 			                // we give precedence to the project dependency over the installed library dependency
 			                for (String root : mf.getSourceRoots(projectLib)) {
-			                    eval.addRascalSearchPath(URIUtil.getChildLocation(projectLib, root));
+			                    searchPath.accept(URIUtil.getChildLocation(projectLib, root));
 			                }
 			            }
 			            else {
 			                // otherwise we expect to find the sources in a library, at the root of the jar
-			                eval.addRascalSearchPath(library);
+			                searchPath.accept(library);
 			            }
 			        }
 			        else {
-			            addJarToSearchPath(ProjectURIResolver.constructProjectURI(project, project.getFile(lib).getProjectRelativePath()), eval);
+			            addJarToSearchPath(ProjectURIResolver.constructProjectURI(project, project.getFile(lib).getProjectRelativePath()), searchPath);
 			        }
 			    } catch (FactTypeUseException | IOException e) {
 			        Activator.log(e.getMessage(), e);
@@ -350,6 +410,10 @@ public class ProjectEvaluatorFactory {
 	}
   
   public static void addJarToSearchPath(ISourceLocation jar, Evaluator eval) {
+      addJarToSearchPath(jar, eval::addRascalSearchPath);
+  }
+  
+  private static void addJarToSearchPath(ISourceLocation jar, Consumer<ISourceLocation> searchPath) {
       try {
           String scheme = jar.getScheme().equals("file") ? "jar" :  "jar+" + jar.getScheme();
           String path = jar.getPath().endsWith("!/") ? jar.getPath() : jar.getPath() + "!/";
@@ -360,7 +424,7 @@ public class ProjectEvaluatorFactory {
 
           if (roots != null) {
               for (String root : roots) {
-                  eval.addRascalSearchPath(URIUtil.getChildLocation(prefix, root));
+                  searchPath.accept(URIUtil.getChildLocation(prefix, root));
               }
           }
       } catch (URISyntaxException e) {
@@ -369,16 +433,20 @@ public class ProjectEvaluatorFactory {
   }
   
   public static void addBundleToSearchPath(Bundle bundle, Evaluator eval) {
+	  addBundleToSearchPath(bundle, eval::addRascalSearchPath);
+  }
+  
+  private static void addBundleToSearchPath(Bundle bundle, Consumer<ISourceLocation> searchPath) {
 	  RascalEclipseManifest mf = new RascalEclipseManifest();
 	  List<String> srcs = mf.getSourceRoots(bundle);
 
 	  if (srcs != null) {
 		  for (String root : srcs) {
-			  eval.addRascalSearchPath(URIUtil.correctLocation("plugin", bundle.getSymbolicName(), "/" + root.trim()));
+			  searchPath.accept(URIUtil.correctLocation("plugin", bundle.getSymbolicName(), "/" + root.trim()));
 		  }
 	  }
 	  else {
-		  eval.addRascalSearchPath(URIUtil.correctLocation("plugin", bundle.getSymbolicName(), "/"));
+		  searchPath.accept(URIUtil.correctLocation("plugin", bundle.getSymbolicName(), "/"));
 	  }
   }
 
@@ -0,0 +1,107 @@
+package org.rascalmpl.eclipse.navigator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The directory structure of a jar file, read once from its central directory. Indexes are
+ * kept for the most recently used jars and are read again when the jar changes on disk.
+ */
+class JarIndex {
+  private static final int MAX_JARS = 32;
+
+  private static final Map<String, JarIndex> cache = Collections.synchronizedMap(new LinkedHashMap<String, JarIndex>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, JarIndex> eldest) {
+      return size() > MAX_JARS;
+    }
+  });
+
+  private final long timestamp;
+  private final long length;
+  /** maps a folder in the jar ("" for the root, no trailing slash) to its entries and whether they are folders */
+  private final Map<String, Map<String, Boolean>> folders = new HashMap<>();
+
+  private JarIndex(File jar) throws IOException {
+    this.timestamp = jar.lastModified();
+    this.length = jar.length();
+
+    folders.put("", new LinkedHashMap<>());
+
+    try (ZipFile zip = new ZipFile(jar)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        boolean folder = name.endsWith("/");
+
+        add(folder ? name.substring(0, name.length() - 1) : name, folder);
+      }
+    }
+  }
+
+  /**
+   * Adds an entry and, since jars do not always contain entries for folders, all of its parents.
+   */
+  private void add(String path, boolean folder) {
+    if (path.isEmpty()) {
+      return;
+    }
+
+    if (folder) {
+      folders.computeIfAbsent(path, p -> new LinkedHashMap<>());
+    }
+
+    int slash = path.lastIndexOf('/');
+    String parent = slash == -1 ? "" : path.substring(0, slash);
+    String name = path.substring(slash + 1);
+
+    Map<String, Boolean> siblings = folders.get(parent);
+    if (siblings == null) {
+      add(parent, true);
+      siblings = folders.get(parent);
+    }
+
+    if (!Boolean.TRUE.equals(siblings.get(name))) {
+      siblings.put(name, folder);
+    }
+  }
+
+  public static JarIndex get(File jar) throws IOException {
+    String key = jar.getAbsolutePath();
+    JarIndex index = cache.get(key);
+
+    if (index == null || index.timestamp != jar.lastModified() || index.length != jar.length()) {
+      index = new JarIndex(jar);
+      cache.put(key, index);
+    }
+
+    return index;
+  }
+
+  /**
+   * @param folder a path inside the jar, with or without leading and trailing slashes
+   * @return the entries of the folder and whether they are folders themselves, or null if there is no such folder
+   */
+  public Map<String, Boolean> list(String folder) {
+    while (folder.startsWith("/")) {
+      folder = folder.substring(1);
+    }
+    while (folder.endsWith("/")) {
+      folder = folder.substring(0, folder.length() - 1);
+    }
+
+    Map<String, Boolean> result = folders.get(folder);
+    return result != null ? Collections.unmodifiableMap(result) : null;
+  }
+}
@@ -7,6 +7,7 @@ import org.eclipse.jdt.ui.JavaUI;
 import org.eclipse.jface.viewers.StyledString;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.ui.PlatformUI;
+import org.rascalmpl.eclipse.navigator.NavigatorContentProvider.Pending;
 import org.rascalmpl.eclipse.navigator.NavigatorContentProvider.SearchPath;
 import org.rascalmpl.eclipse.navigator.NavigatorContentProvider.URIContent;
 import org.rascalmpl.eclipse.navigator.NavigatorContentProvider.ValueContent;
@@ -24,6 +25,9 @@ public class NavigatorContentLabelProvider extends JavaElementLabelProvider {
     else if (element instanceof ValueContent) {
         return ((ValueContent) element).getName();
     }
+    else if (element instanceof Pending) {
+        return "Pending...";
+    }
     else {
       return super.getText(element);
     }
@@ -37,7 +41,7 @@ public class NavigatorContentLabelProvider extends JavaElementLabelProvider {
     else if (element instanceof URIContent) {
         return new StyledString(getText(element));
     }  
-    else if (element instanceof SearchPath || element instanceof ValueContent) {
+    else if (element instanceof SearchPath || element instanceof ValueContent || element instanceof Pending) {
         return new StyledString(getText(element));
     }
     
@@ -1,12 +1,20 @@
 package org.rascalmpl.eclipse.navigator;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.StreamSupport;
 
+import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
@@ -16,9 +24,12 @@ import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
@@ -29,7 +40,8 @@ import org.eclipse.ui.progress.UIJob;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.eclipse.nature.ProjectEvaluatorFactory;
-import org.rascalmpl.interpreter.load.RascalSearchPath;
+import org.rascalmpl.eclipse.util.RascalEclipseManifest;
+import org.rascalmpl.uri.ProjectURIResolver;
 import org.rascalmpl.uri.URIResolverRegistry;
 import org.rascalmpl.uri.URIStorage;
 import org.rascalmpl.uri.URIUtil;
@@ -56,6 +68,16 @@ import io.usethesource.vallang.visitors.IValueVisitor;
 public class NavigatorContentProvider implements ITreeContentProvider, IResourceChangeListener,
 	IResourceDeltaVisitor {
   public TreeViewer _viewer;
+  
+  /**
+   * Listings of URIContent folders, which are computed in the background since they may
+   * require reading large jar files. Until a listing is available a Pending node is shown.
+   */
+  private final Map<URIContent, Object[]> listings = new ConcurrentHashMap<>();
+  
+  private static final long REFRESH_DELAY = 200;
+  private final Set<Object> refreshRequests = new LinkedHashSet<>();
+  private final UIJob refreshJob = new RefreshJob();
 
   public NavigatorContentProvider() {
 	  super();
@@ -94,7 +116,7 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
       else if (parentElement instanceof URIContent) {
     	  URIContent storage = (URIContent) parentElement;
     	  if (storage.isDirectory()) {
-    		  return storage.listEntries();
+    		  return getListing(storage);
     	  }
       }
       else if (parentElement instanceof ValueContent) {
@@ -110,19 +132,72 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
     return new Object[] {};
   }
 
+  private Object[] getListing(URIContent storage) {
+	  Object[] result = listings.get(storage);
+	  
+	  if (result == null) {
+		  Object[] placeholder = new Object[] { new Pending(storage) };
+		  result = listings.putIfAbsent(storage, placeholder);
+		  
+		  if (result == null) {
+			  result = placeholder;
+			  
+			  new Job("Listing " + storage.getName()) {
+				  @Override
+				  protected IStatus run(IProgressMonitor monitor) {
+					  URIContent[] entries = storage.listEntries();
+					  
+					  for (URIContent entry : entries) {
+						  // the labels and the sorter need this, so compute it here instead of in the UI thread 
+						  entry.isDirectory();
+					  }
+					  
+					  if (listings.replace(storage, placeholder, entries)) {
+						  new UIJob("Refresh viewer") {  //$NON-NLS-1$
+							  public IStatus runInUIThread(IProgressMonitor monitor) {
+								  if (_viewer != null && !_viewer.getControl().isDisposed()) {
+									  _viewer.refresh(storage);
+								  }
+								  return Status.OK_STATUS;
+							  }
+						  }.schedule();
+					  }
+					  
+					  return Status.OK_STATUS;
+				  }
+			  }.schedule();
+		  }
+	  }
+	  
+	  return result;
+  }
+  
+  /**
+   * Placeholder for the children of a folder that are still being listed.
+   */
+  public static class Pending {
+	  private final URIContent parent;
+	  
+	  public Pending(URIContent parent) {
+		  this.parent = parent;
+	  }
+	  
+	  public URIContent getParent() {
+		  return parent;
+	  }
+  }
+
   public static class SearchPath {
 	  private final IProject project;
-	  private final RascalSearchPath resolver;
 
 	  public SearchPath(IProject project) {
 		  this.project = project;
-		  this.resolver =  ProjectEvaluatorFactory.getInstance().getProjectSearchPath(project);
 	  }
 	  
 	  public List<URIContent> getSearchPath() {
 		  List<URIContent> result = new LinkedList<>();
 		  
-		  for (ISourceLocation root : resolver.collect()) {
+		  for (ISourceLocation root : ProjectEvaluatorFactory.getInstance().getProjectSearchPathRoots(project)) {
 			  result.add(new URIContent(root, project, true));
 		  }
 
@@ -435,6 +510,7 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
     private final ISourceLocation uri;
 	  private final IProject project;
 	  private final boolean isRoot;
+	  private volatile Boolean isDirectory;
 	  
 	  public URIContent(ISourceLocation uri, IProject project, boolean isRoot) {
 		  this.uri = uri;
@@ -442,6 +518,11 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
 		  this.isRoot = isRoot;
 	  }
 	  
+	  private URIContent(ISourceLocation uri, IProject project, boolean isRoot, boolean isDirectory) {
+		  this(uri, project, isRoot);
+		  this.isDirectory = isDirectory;
+	  }
+	  
 	  public boolean isRoot() {
 		  return isRoot;
 	  }
@@ -461,6 +542,11 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
 	  public URIContent[] listEntries() {
 	      ISourceLocation l = uri;
 	      
+	      URIContent[] indexed = listIndexed();
+	      if (indexed != null) {
+	          return indexed;
+	      }
+	      
 	      if (isJarLoc(l)) {
 	          try {
 	              l = URIUtil.changePath(URIUtil.changeScheme(l, "jar+" + l.getScheme()), l.getPath() + "!/");
@@ -471,6 +557,72 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
 	      return doList(l);
 	  }
 
+    /**
+     * Lists a jar, or a folder inside a jar, from the cached index of the jar.
+     * @return null if the jar is not a local file
+     */
+    private URIContent[] listIndexed() {
+        String path = uri.getPath();
+        if (path == null) {
+            return null;
+        }
+        
+        ISourceLocation base = uri;
+        String jarPath = path;
+        String folder = "";
+        int bang = path.indexOf("!/");
+        
+        if (uri.getScheme().startsWith("jar+") && bang != -1) {
+            jarPath = path.substring(0, bang);
+            folder = path.substring(bang + 2);
+        }
+        else if (isJarLoc(uri)) {
+            try {
+                base = URIUtil.changePath(URIUtil.changeScheme(uri, "jar+" + uri.getScheme()), path + "!/");
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+        else {
+            return null;
+        }
+        
+        String scheme = uri.getScheme().startsWith("jar+") ? uri.getScheme().substring("jar+".length()) : uri.getScheme();
+        File jar = localFile(scheme, uri.getAuthority(), jarPath);
+        if (jar == null || !jar.isFile()) {
+            return null;
+        }
+        
+        try {
+            Map<String, Boolean> entries = JarIndex.get(jar).list(folder);
+            if (entries == null) {
+                return new URIContent[0];
+            }
+            
+            URIContent[] result = new URIContent[entries.size()];
+            int i = 0;
+            for (Map.Entry<String, Boolean> entry : entries.entrySet()) {
+                result[i++] = new URIContent(URIUtil.getChildLocation(base, entry.getKey()), project, false, entry.getValue());
+            }
+            return result;
+        } catch (IOException e) {
+            Activator.log("could not index jar " + jar, e);
+            return null;
+        }
+    }
+    
+    private static File localFile(String scheme, String authority, String path) {
+        switch (scheme) {
+            case "file":
+                return new File(path);
+            case "project":
+                IPath location = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/" + authority).append(path)).getLocation();
+                return location != null ? location.toFile() : null;
+            default:
+                return null;
+        }
+    }
+
     private boolean isJarLoc(ISourceLocation l) {
         return l.getPath() != null && l.getPath().endsWith(".jar");
     }
@@ -487,7 +639,13 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
     }
 	  
 	  public boolean isDirectory() {
-		  return reg.isDirectory(uri) || isJarLoc(uri);
+		  Boolean result = isDirectory;
+		  
+		  if (result == null) {
+			  result = isDirectory = reg.isDirectory(uri) || isJarLoc(uri);
+		  }
+		  
+		  return result;
 	  }
 	  
 	  public boolean exists() {
@@ -534,6 +692,9 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
     else if (element instanceof ValueContent) {
         return ((ValueContent) element).getParent();
     }
+    else if (element instanceof Pending) {
+        return ((Pending) element).getParent();
+    }
     else if (element instanceof URIStorage) {
         return null;
     }
@@ -543,29 +704,149 @@ public class NavigatorContentProvider implements ITreeContentProvider, IResource
 
   @Override
   public boolean hasChildren(Object element) {
+    if (element instanceof URIContent) {
+      // a folder might turn out to be empty, but that is cheaper to find out than listing it
+      return ((URIContent) element).isDirectory();
+    }
+    else if (element instanceof ValueContent) {
+      return ((ValueContent) element).isDirectory();
+    }
+    else if (element instanceof Pending) {
+      return false;
+    }
+    
     return getChildren(element).length > 0;
   }
 
   @Override
   public void resourceChanged(IResourceChangeEvent event) {
 	IResourceDelta delta = event.getDelta();
+	if (delta == null) {
+		return;
+	}
+	
 	try {
 		delta.accept(this);
 	} catch (CoreException e) { 
-		e.printStackTrace();
+		Activator.log("could not process resource change in navigator", e);
 	}
   }
 
   @Override
   public boolean visit(IResourceDelta delta) throws CoreException {
-	  final IResource source = delta.getResource();
-	  new UIJob("Refresh viewer") {  //$NON-NLS-1$
-		public IStatus runInUIThread(IProgressMonitor monitor) {
-		if (_viewer != null && !_viewer.getControl().isDisposed())
-			_viewer.refresh(source);
-		return Status.OK_STATUS;						
-		}
-	  }.schedule();
-	  return false;
+	  IResource resource = delta.getResource();
+	  boolean structural = delta.getKind() == IResourceDelta.ADDED || delta.getKind() == IResourceDelta.REMOVED;
+	  
+	  switch (resource.getType()) {
+	  case IResource.ROOT:
+		  return true;
+	  case IResource.PROJECT:
+		  if (structural || (delta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0) {
+			  searchPathChanged((IProject) resource);
+			  return false;
+		  }
+		  return true;
+	  case IResource.FOLDER:
+		  if (structural) {
+			  folderChanged(resource.getParent());
+			  return false;
+		  }
+		  return true;
+	  case IResource.FILE:
+		  if (isLibraryOrManifest(resource)) {
+			  searchPathChanged(resource.getProject());
+		  }
+		  else if (structural) {
+			  folderChanged(resource.getParent());
+		  }
+		  return false;
+	  default:
+		  return false;
+	  }
+  }
+  
+  private static boolean isLibraryOrManifest(IResource file) {
+	  String path = file.getProjectRelativePath().toPortableString();
+	  return "jar".equals(file.getFileExtension())
+			  || RascalEclipseManifest.META_INF_RASCAL_MF.equals(path)
+			  || "pom.xml".equals(path);
+  }
+  
+  /**
+   * Forgets all listings under the search path of the project and refreshes it.
+   */
+  private void searchPathChanged(IProject project) {
+	  ProjectEvaluatorFactory.getInstance().resetSearchPath(project);
+	  listings.keySet().removeIf(c -> c.getProject().equals(project));
+	  requestRefresh(new SearchPath(project));
+  }
+  
+  /**
+   * Forgets the listings of the folder wherever it occurs in a search path and refreshes those.
+   */
+  private void folderChanged(IContainer folder) {
+	  ISourceLocation projectLoc = ProjectURIResolver.constructProjectURI(folder.getFullPath());
+	  IPath location = folder.getLocation();
+	  String path = projectLoc.getPath().replaceAll("/$", "");
+	  
+	  for (URIContent content : listings.keySet()) {
+		  ISourceLocation uri = content.getURI();
+		  String contentPath = uri.getPath() != null ? uri.getPath().replaceAll("/$", "") : "";
+		  
+		  boolean same = ("project".equals(uri.getScheme()) && uri.getAuthority().equals(projectLoc.getAuthority()) && contentPath.equals(path))
+				  || ("file".equals(uri.getScheme()) && location != null && new Path(contentPath).equals(location));
+		  
+		  if (same && listings.remove(content) != null) {
+			  requestRefresh(content);
+		  }
+	  }
+  }
+  
+  private void requestRefresh(Object element) {
+	  synchronized (refreshRequests) {
+		  refreshRequests.add(element);
+	  }
+	  refreshJob.schedule(REFRESH_DELAY);
+  }
+  
+  /**
+   * Refreshes all elements that were requested since the last run, in one go. The job is
+   * scheduled with a delay, such that a build that touches many files leads to a single refresh.
+   */
+  private class RefreshJob extends UIJob {
+	  public RefreshJob() {
+		  super("Refresh viewer"); //$NON-NLS-1$
+		  setSystem(true);
+	  }
+	  
+	  @Override
+	  public IStatus runInUIThread(IProgressMonitor monitor) {
+		  List<Object> elements;
+		  synchronized (refreshRequests) {
+			  elements = new ArrayList<>(refreshRequests);
+			  refreshRequests.clear();
+		  }
+		  
+		  if (_viewer == null || _viewer.getControl().isDisposed()) {
+			  return Status.OK_STATUS;
+		  }
+		  
+		  Set<IProject> refreshedProjects = new HashSet<>();
+		  for (Object element : elements) {
+			  if (element instanceof SearchPath) {
+				  refreshedProjects.add(((SearchPath) element).getProject());
+			  }
+		  }
+		  
+		  for (Object element : elements) {
+			  // a refreshed search path already covers all folders below it
+			  if (element instanceof URIContent && refreshedProjects.contains(((URIContent) element).getProject())) {
+				  continue;
+			  }
+			  _viewer.refresh(element);
+		  }
+		  
+		  return Status.OK_STATUS;
+	  }
   }
 }
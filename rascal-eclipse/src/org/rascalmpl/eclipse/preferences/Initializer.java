@@ -13,6 +13,7 @@ public class Initializer extends PreferencesInitializer {
 		service.setBooleanPreference(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.bootstrapRascalProject, false);
 		service.setBooleanPreference(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.loadInterpretedLanguagesFromBundles, true);
 		service.setBooleanPreference(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.loadInterpretedLanguagesFromProjects, true);
+		service.setIntPreference(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.terminalOutputElisionThreshold, 256 * 1024);
 	}
 
 	@Override
@@ -22,5 +23,6 @@ public class Initializer extends PreferencesInitializer {
 		service.clearPreferenceAtLevel(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.bootstrapRascalProject);
 		service.clearPreferenceAtLevel(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.loadInterpretedLanguagesFromBundles);
 		service.clearPreferenceAtLevel(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.loadInterpretedLanguagesFromProjects);
+		service.clearPreferenceAtLevel(IPreferencesService.DEFAULT_LEVEL, RascalPreferences.terminalOutputElisionThreshold);
 	}
 }
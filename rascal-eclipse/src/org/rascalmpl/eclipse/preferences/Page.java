@@ -4,6 +4,7 @@ import static org.rascalmpl.eclipse.preferences.RascalPreferences.bootstrapRasca
 import static org.rascalmpl.eclipse.preferences.RascalPreferences.enableRascalCompiler;
 import static org.rascalmpl.eclipse.preferences.RascalPreferences.loadInterpretedLanguagesFromBundles;
 import static org.rascalmpl.eclipse.preferences.RascalPreferences.loadInterpretedLanguagesFromProjects;
+import static org.rascalmpl.eclipse.preferences.RascalPreferences.terminalOutputElisionThreshold;
 
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.TabFolder;
@@ -16,6 +17,7 @@ import io.usethesource.impulse.preferences.PreferencesTab;
 import io.usethesource.impulse.preferences.TabbedPreferencesPage;
 import io.usethesource.impulse.preferences.fields.BooleanFieldEditor;
 import io.usethesource.impulse.preferences.fields.FieldEditor;
+import io.usethesource.impulse.preferences.fields.IntegerFieldEditor;
 
 public class Page extends TabbedPreferencesPage {
 	private static class Tab extends ConfigurationPreferencesTab {
@@ -70,12 +72,24 @@ public class Page extends TabbedPreferencesPage {
                     false, false,
                     true);
 			
+			@SuppressWarnings("deprecation")
+            IntegerFieldEditor elisionThreshold = fPrefUtils.makeNewIntegerField(
+                    page, this, fPrefService,
+                    IPreferencesService.INSTANCE_LEVEL, terminalOutputElisionThreshold, "Bytes of REPL output shown before the rest is elided (0 shows everything)",
+                    "If a command prints more than this many bytes at once, the terminal shows the start and the end of the output and a link to the full value. Applies to REPLs started afterwards.",
+                    parent,
+                    true, true,
+                    false, "0",
+                    false, "0",
+                    true);
+			
 			
 			return new FieldEditor[] {
 					enableCompilerFieldEditor,
 					enableBootstrap,
 					loadInterpretedLanguages1,
-					loadInterpretedLanguages2
+					loadInterpretedLanguages2,
+					elisionThreshold
 			};
 		}
 	}
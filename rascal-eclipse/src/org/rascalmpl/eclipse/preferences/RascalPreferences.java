@@ -9,6 +9,7 @@ public class RascalPreferences {
   public static final String bootstrapRascalProject = "bootstrapRascalProject";
   public static final String loadInterpretedLanguagesFromProjects = "loadInterpretedLanguagesFromProjects";
   public static final String loadInterpretedLanguagesFromBundles = "loadInterpretedLanguagesFromBundles";
+  public static final String terminalOutputElisionThreshold = "terminalOutputElisionThreshold";
   
   private static IPreferencesService service = Activator.getInstance().getPreferencesService();
 
@@ -27,4 +28,11 @@ public class RascalPreferences {
   public static boolean loadInterpretedLanguagesFromProjects() {
       return service.getBooleanPreference(IPreferencesService.INSTANCE_LEVEL, loadInterpretedLanguagesFromProjects);
   }
+  
+  /**
+   * @return the number of bytes a burst of REPL output may have before the rest is elided in the terminal, or 0 for no limit
+   */
+  public static int terminalOutputElisionThreshold() {
+      return service.getIntPreference(IPreferencesService.INSTANCE_LEVEL, terminalOutputElisionThreshold);
+  }
 }
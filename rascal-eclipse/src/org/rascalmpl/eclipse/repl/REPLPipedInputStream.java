@@ -2,19 +2,27 @@ package org.rascalmpl.eclipse.repl;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * The input side of the pipe between the terminal and the REPL, backed by a ring buffer of bytes.
+ *
+ * There is one reader (the REPL thread). Writers are serialized on this object, so the buffer
+ * only ever sees a single producer and a single consumer, which only communicate via the
+ * volatile head and tail counters. A side that has to wait is parked and unparked by the other side.
+ */
 public class REPLPipedInputStream extends InputStream {
+  private static final int CAPACITY = 64 * 1024; // must be a power of two
+  private static final int MASK = CAPACITY - 1;
 
-  private final BlockingQueue<Byte> queue;
-  private volatile boolean closed;
-
-  public REPLPipedInputStream() {
-    this.queue = new ArrayBlockingQueue<>(8 * 1024);
-    this.closed = false;
-  }
+  private final byte[] buffer = new byte[CAPACITY];
+  /** total number of bytes read, only changed by the reader */
+  private volatile long head = 0;
+  /** total number of bytes written, only changed by the writer */
+  private volatile long tail = 0;
+  private volatile boolean closed = false;
+  private volatile Thread waitingReader = null;
+  private volatile Thread waitingWriter = null;
 
   @Override
   public int read(byte[] b) throws IOException {
@@ -31,63 +39,146 @@ public class REPLPipedInputStream extends InputStream {
     } else if (len == 0) {
       return 0;
     }
+
     // we have to at least read one (so block until we can)
-    int atLeastOne = read();
-    if (atLeastOne == -1) {
+    long h = head;
+    long t = awaitData(h);
+    if (t == -1) {
       return -1;
     }
-    int index = off;
-    b[index++] = (byte) atLeastOne;
 
-    // now consume the rest of the available bytes
-    Byte current;
-    while ((current = queue.poll()) != null && (index < off + len)) {
-      b[index++] = current;
-    }
-    return index - off;
+    // now consume as much of the available bytes as fits
+    int count = (int) Math.min(len, t - h);
+    int start = (int) (h & MASK);
+    int first = Math.min(count, CAPACITY - start);
+    System.arraycopy(buffer, start, b, off, first);
+    System.arraycopy(buffer, 0, b, off + first, count - first);
+
+    consumed(h + count);
+    return count;
   }
 
   @Override
   public int read() throws IOException {
-    Byte result = null;
-    try {
-    	while ((result = queue.poll(10, TimeUnit.MILLISECONDS)) == null) {
-    		if (closed) {
-    			return -1;
-    		}
-    	}
+    long h = head;
+    if (awaitData(h) == -1) {
+      return -1;
     }
-    catch (InterruptedException e) {
-    	return -1;
+
+    int result = buffer[(int) (h & MASK)] & 0xFF;
+    consumed(h + 1);
+    return result;
+  }
+
+  /**
+   * Blocks until there is something to read after position h.
+   * @return the current tail, or -1 at the end of the stream
+   */
+  private long awaitData(long h) {
+    long t;
+
+    while ((t = tail) == h) {
+      if (closed) {
+        // the writer might have finished just before closing
+        if (tail == h) {
+          return -1;
+        }
+        continue;
+      }
+
+      waitingReader = Thread.currentThread();
+      if (tail == h && !closed) {
+        LockSupport.park(this);
+      }
+      waitingReader = null;
+
+      if (Thread.interrupted()) {
+        return -1;
+      }
     }
-    return (result & 0xFF);
+
+    return t;
+  }
+
+  private void consumed(long newHead) {
+    head = newHead;
+    LockSupport.unpark(waitingWriter);
+  }
+
+  @Override
+  public int available() {
+    return (int) (tail - head);
   }
 
   @Override
   public void close() {
     closed = true;
+    LockSupport.unpark(waitingReader);
+    LockSupport.unpark(waitingWriter);
   }
-  
+
   public void write(byte[] b) throws IOException {
-	  write(b, 0, b.length);
+    write(b, 0, b.length);
   }
 
-  public void write(byte[] b, int off, int len) throws IOException {
-	  try {
-		  for (int i = off; i < off + len; i++) {
-			  queue.put(b[i]);
-		  }
-	  } catch (InterruptedException e) {
-		  throw new IOException(e);
-	  } 
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    long t = tail;
+
+    while (len > 0) {
+      long h = awaitSpace(t);
+      int count = (int) Math.min(len, CAPACITY - (t - h));
+      int start = (int) (t & MASK);
+      int first = Math.min(count, CAPACITY - start);
+      System.arraycopy(b, off, buffer, start, first);
+      System.arraycopy(b, off + first, buffer, 0, count - first);
+
+      t += count;
+      off += count;
+      len -= count;
+
+      produced(t);
+    }
   }
-  public void write(byte b) throws IOException {
-	  try {
-		  queue.put(b); 
-	  } catch (InterruptedException e) {
-		  throw new IOException(e);
-	  } 
+
+  public synchronized void write(byte b) throws IOException {
+    long t = tail;
+    awaitSpace(t);
+    buffer[(int) (t & MASK)] = b;
+    produced(t + 1);
   }
 
+  /**
+   * Blocks until there is room in the buffer to write at position t.
+   * @return the current head
+   */
+  private long awaitSpace(long t) throws IOException {
+    long h;
+
+    while ((h = head) + CAPACITY == t) {
+      if (closed) {
+        throw new IOException("Pipe closed");
+      }
 
+      waitingWriter = Thread.currentThread();
+      if (head + CAPACITY == t && !closed) {
+        LockSupport.park(this);
+      }
+      waitingWriter = null;
+
+      if (Thread.interrupted()) {
+        throw new IOException(new InterruptedException());
+      }
+    }
+
+    if (closed) {
+      throw new IOException("Pipe closed");
+    }
+
+    return h;
+  }
+
+  private void produced(long newTail) {
+    tail = newTail;
+    LockSupport.unpark(waitingReader);
+  }
 }
@@ -20,9 +20,21 @@ import io.usethesource.vallang.exceptions.FactTypeUseException;
 import io.usethesource.vallang.io.StandardTextReader;
 
 final class RascalLinkMouseListener implements ITerminalMouseListener {
+    private final TerminalOutputStage output;
     private int currentLine = -1;
     private int currentColumn = -1;
 
+    public RascalLinkMouseListener() {
+        this(null);
+    }
+
+    /**
+     * @param output the stage that owns the values elided links of this terminal refer to, may be null
+     */
+    public RascalLinkMouseListener(TerminalOutputStage output) {
+        this.output = output;
+    }
+
     private String safeToString(char[] ch) {
         if (ch == null) {
             return "";
@@ -42,7 +54,12 @@ final class RascalLinkMouseListener implements ITerminalMouseListener {
             if (link != null && LinkDetector.typeOf(link) == Type.SOURCE_LOCATION) {
                 try {
                     IValue loc = new StandardTextReader().read(ValueFactoryFactory.getValueFactory(), new StringReader(link));
-                    if (loc instanceof ISourceLocation) {
+                    if (loc instanceof ISourceLocation && TerminalOutputStage.isElidedLink((ISourceLocation) loc)) {
+                        if (output == null || !output.openElided((ISourceLocation) loc)) {
+                            Display.getCurrent().beep();
+                        }
+                    }
+                    else if (loc instanceof ISourceLocation) {
                         if (URIResolverRegistry.getInstance().exists(((ISourceLocation) loc).top())) {
                             EditorUtil.openAndSelectURI((ISourceLocation)loc);
                         }
@@ -49,6 +49,7 @@ import org.rascalmpl.eclipse.nature.IWarningHandler;
 import org.rascalmpl.eclipse.nature.ModuleReloader;
 import org.rascalmpl.eclipse.nature.ProjectEvaluatorFactory;
 import org.rascalmpl.eclipse.nature.WarningsToPrintWriter;
+import org.rascalmpl.eclipse.preferences.RascalPreferences;
 import org.rascalmpl.eclipse.util.ThreadSafeImpulseConsole;
 import org.rascalmpl.ideservices.IDEServices;
 import org.rascalmpl.interpreter.Evaluator;
@@ -68,6 +69,7 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
     private final AtomicBoolean shellIsRunning = new AtomicBoolean(false);
     private REPLPipedInputStream stdIn;
     private OutputStream stdout;
+    private TerminalOutputStage output;
     protected String project;
     protected String module;
     protected String mode;
@@ -111,6 +113,7 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
     public void connect(ITerminalControl control) {
         super.connect(control);
         
+        output = new TerminalOutputStage(control.getRemoteToTerminalOutputStream(), RascalPreferences.terminalOutputElisionThreshold());
         final Terminal tm = configure(control);
         
         stdIn = new REPLPipedInputStream();
@@ -123,7 +126,7 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
         Thread t = new Thread() {
             public void run() {
                 try {
-                    shell = constructREPL(control, stdIn, control.getRemoteToTerminalOutputStream(), tm);
+                    shell = constructREPL(control, stdIn, output, tm);
                     control.setState(TerminalState.CONNECTED);
 
                     if (module != null) {
@@ -182,7 +185,7 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
         catch (UnsupportedEncodingException e) {
           throw new RuntimeException("UTF8 not available???", e);
         }
-        vtControl.addMouseListener(new RascalLinkMouseListener());
+        vtControl.addMouseListener(new RascalLinkMouseListener(output));
         return tm;
     }
     
@@ -196,6 +199,12 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
                 shell.stop();
                 shell = null;
             }
+            
+            if (output != null) {
+                output.close();
+            }
+        } catch (IOException e) {
+            Activator.log("could not close terminal output", e);
         } finally {
             RascalTerminalRegistry.getInstance().unregister(this);
         }
@@ -299,6 +308,7 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
             @Override
             public void handleInput(String line, Map<String, InputStream> output, Map<String, String> metadata)
             		throws InterruptedException {
+            	RascalTerminalConnector.this.output.startOutput();
             	super.handleInput(line, output, metadata);
             	
             	for (String mimetype : output.keySet()) {
@@ -344,7 +354,11 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
                     job.schedule();
                     job.join();
                  
-                    return super.evalStatement(statement, lastLine);
+                    IRascalResult result = super.evalStatement(statement, lastLine);
+                    if (result != null) {
+                        RascalTerminalConnector.this.output.setResult(result.getValue());
+                    }
+                    return result;
                 }
                 finally {
                     if (debug() && !":quit".equals(statement.trim())) {
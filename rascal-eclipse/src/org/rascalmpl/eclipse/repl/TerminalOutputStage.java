@@ -0,0 +1,355 @@
+package org.rascalmpl.eclipse.repl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.views.values.text.Editor;
+
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValue;
+
+/**
+ * Sits between the REPL and the terminal emulator. The REPL only appends to a buffer, so it never
+ * waits for the terminal to render, while a separate thread copies the buffer to the terminal at
+ * most once per frame.
+ *
+ * A burst of output (everything written without a pause of IDLE_MILLIS) that grows beyond the
+ * threshold is elided: the first threshold bytes are shown, then a note with a link to the result
+ * value of the current command, and then the last TAIL_SIZE bytes (which include the new prompt).
+ * Neither cut splits a UTF-8 character or an ANSI escape sequence. The values that elided output
+ * links to belong to this stage, so they are forgotten with the REPL.
+ *
+ * Without a threshold nothing is elided, and a writer waits for the terminal once more than
+ * MAX_FRAME_SIZE bytes are waiting to be rendered.
+ */
+class TerminalOutputStage extends OutputStream {
+    public static final String ELIDED_SCHEME = "elided";
+
+    private static final long FRAME_MILLIS = 40;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final int TAIL_SIZE = 4 * 1024;
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+    /* escape sequences longer than this are not protected from being cut */
+    private static final int MAX_ESCAPE_SIZE = 32;
+    private static final int MAX_ELIDED_VALUES = 10;
+
+    private static final AtomicInteger elidedCounter = new AtomicInteger();
+    private final Map<String, IValue> elidedValues = Collections.synchronizedMap(new LinkedHashMap<String, IValue>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IValue> eldest) {
+            return size() > MAX_ELIDED_VALUES;
+        }
+    });
+
+    private final OutputStream terminal;
+    private final long threshold;
+    private final Object lock = new Object();
+    private final Thread renderer;
+
+    private byte[] frame = new byte[8 * 1024];
+    private int frameSize = 0;
+    private byte[] spare = new byte[8 * 1024];
+
+    private long lastWrite = System.nanoTime();
+    private long burst = 0;
+    private long elided = 0;
+    private final byte[] tail = new byte[TAIL_SIZE];
+    private long tailCount = 0;
+    private IValue result = null;
+    private volatile boolean closed = false;
+
+    /**
+     * @param terminal  the stream to the terminal emulator
+     * @param threshold number of bytes in a burst of output after which the rest is elided, or 0 for no limit
+     */
+    public TerminalOutputStage(OutputStream terminal, long threshold) {
+        this.terminal = terminal;
+        this.threshold = threshold;
+        this.renderer = new Thread(this::render);
+        renderer.setName("Rascal terminal output");
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    /**
+     * A new command is about to be evaluated.
+     */
+    public void startOutput() {
+        synchronized (lock) {
+            result = null;
+        }
+    }
+
+    /**
+     * Registers the value computed by the current command, such that elided output can link to it.
+     */
+    public void setResult(IValue value) {
+        synchronized (lock) {
+            result = value;
+        }
+    }
+
+    public static boolean isElidedLink(ISourceLocation loc) {
+        return ELIDED_SCHEME.equals(loc.getScheme());
+    }
+
+    /**
+     * Opens the value that an elided output belonged to in the value editor.
+     * @return false if the value is not available anymore
+     */
+    public boolean openElided(ISourceLocation loc) {
+        IValue value = elidedValues.get(loc.getPath().replaceFirst("^/", ""));
+
+        if (value != null) {
+            Editor.edit(value, true, 2);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("terminal output is closed");
+        }
+
+        synchronized (lock) {
+            if (threshold <= 0) {
+                awaitRoom(len);
+            }
+
+            long now = System.nanoTime();
+            if (now - lastWrite > IDLE_NANOS) {
+                endBurst();
+            }
+            lastWrite = now;
+
+            if (threshold <= 0 || burst + len <= threshold) {
+                append(b, off, len);
+            }
+            else {
+                int fits = burst < threshold ? safeCut(b, off, (int) (threshold - burst)) : 0;
+                append(b, off, fits);
+                elided += len - fits;
+                keepTail(b, off + fits, len - fits);
+            }
+
+            burst += len;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        renderer.interrupt();
+        elidedValues.clear();
+
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the renderer has taken the frame, if adding len bytes would make it larger than MAX_FRAME_SIZE.
+     */
+    private void awaitRoom(int len) throws IOException {
+        try {
+            while (frameSize > 0 && frameSize + len > MAX_FRAME_SIZE) {
+                if (closed) {
+                    throw new IOException("terminal output is closed");
+                }
+                lock.wait();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * @return the largest length of at most len bytes from off that does not end inside a UTF-8 character or
+     * an escape sequence
+     */
+    private static int safeCut(byte[] b, int off, int len) {
+        while (len > 0 && (b[off + len] & 0xC0) == 0x80) {
+            len--;
+        }
+
+        for (int i = len - 1; i >= 0 && i >= len - MAX_ESCAPE_SIZE; i--) {
+            if (b[off + i] == 0x1B) {
+                return isCompleteEscape(b, off + i, off + len) ? len : i;
+            }
+        }
+
+        return len;
+    }
+
+    /**
+     * @return true if the escape sequence at start ends before end
+     */
+    private static boolean isCompleteEscape(byte[] b, int start, int end) {
+        if (start + 1 >= end) {
+            return false;
+        }
+
+        if (b[start + 1] != '[') {
+            // a two byte escape
+            return true;
+        }
+
+        for (int i = start + 2; i < end; i++) {
+            if (b[i] >= 0x40 && b[i] <= 0x7E) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void append(byte[] b, int off, int len) {
+        if (frameSize + len > frame.length) {
+            byte[] larger = new byte[Math.max(frame.length * 2, frameSize + len)];
+            System.arraycopy(frame, 0, larger, 0, frameSize);
+            frame = larger;
+        }
+
+        System.arraycopy(b, off, frame, frameSize, len);
+        frameSize += len;
+    }
+
+    private void keepTail(byte[] b, int off, int len) {
+        if (len >= TAIL_SIZE) {
+            off += len - TAIL_SIZE;
+            tailCount += len - TAIL_SIZE;
+            len = TAIL_SIZE;
+        }
+
+        int start = (int) (tailCount % TAIL_SIZE);
+        int first = Math.min(len, TAIL_SIZE - start);
+        System.arraycopy(b, off, tail, start, first);
+        System.arraycopy(b, off + first, tail, 0, len - first);
+        tailCount += len;
+    }
+
+    /**
+     * Finishes the current burst of output: if anything was elided, the note and
+     * the tail of the output are added to the frame.
+     */
+    private void endBurst() {
+        if (elided > 0) {
+            String link = "";
+
+            if (result != null) {
+                String id = Integer.toString(elidedCounter.incrementAndGet());
+                elidedValues.put(id, result);
+                link = ", see |" + ELIDED_SCHEME + ":///" + id + "| for the full value";
+            }
+
+            byte[] note = ("\u001B[0m\n... " + elided + " bytes of output elided" + link + " ...\n").getBytes(StandardCharsets.UTF_8);
+            append(note, 0, note.length);
+
+            int size = (int) Math.min(tailCount, TAIL_SIZE);
+            int start = (int) ((tailCount - size) % TAIL_SIZE);
+
+            // the tail starts at a line, or at least at a character, instead of halfway an escape sequence or character
+            int skip = 0;
+            while (skip < size && tail[(start + skip) % TAIL_SIZE] != '\n') {
+                skip++;
+            }
+            if (skip == size) {
+                skip = 0;
+                while (skip < size && (tail[(start + skip) % TAIL_SIZE] & 0xC0) == 0x80) {
+                    skip++;
+                }
+            }
+            else {
+                skip++;
+            }
+            start = (start + skip) % TAIL_SIZE;
+            size -= skip;
+
+            int first = Math.min(size, TAIL_SIZE - start);
+            append(tail, start, first);
+            append(tail, 0, size - first);
+        }
+
+        burst = 0;
+        elided = 0;
+        tailCount = 0;
+    }
+
+    private void render() {
+        try {
+            while (true) {
+                byte[] out;
+                int size;
+
+                synchronized (lock) {
+                    while (frameSize == 0) {
+                        if (elided > 0) {
+                            long idle = System.nanoTime() - lastWrite;
+
+                            if (idle > IDLE_NANOS) {
+                                endBurst();
+                                break;
+                            }
+
+                            lock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(IDLE_NANOS - idle)));
+                        }
+                        else {
+                            lock.wait();
+                        }
+                    }
+
+                    out = frame;
+                    size = frameSize;
+                    frame = spare;
+                    frameSize = 0;
+                    lock.notifyAll();
+                }
+
+                try {
+                    terminal.write(out, 0, size);
+                    terminal.flush();
+                }
+                catch (IOException e) {
+                    Activator.log("could not write to terminal", e);
+                }
+
+                synchronized (lock) {
+                    spare = out.length > 1024 * 1024 ? new byte[8 * 1024] : out;
+                }
+
+                Thread.sleep(FRAME_MILLIS);
+            }
+        }
+        catch (InterruptedException e) {
+            // closed
+        }
+    }
+}
@@ -15,6 +15,8 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.progress.UIJob;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.values.functions.IFunction;
+import org.rascalmpl.values.parsetrees.ITree;
+import org.rascalmpl.values.parsetrees.TreeAdapter;
 
 import io.usethesource.impulse.editor.UniversalEditor;
 import io.usethesource.impulse.parser.IParseController;
@@ -34,40 +36,35 @@ public class EditorUpdater implements IEditorService {
 	public EditorUpdater() {
 	}
 
+	/**
+	 * Applies a patch that was computed in the background, unless the document
+	 * was modified since the parse tree the patch was computed from.
+	 */
 	class Job extends UIJob {
 
-		private IParseController parseController;
+		private final IDocument doc;
+		private final long stamp;
+		private final IList patch;
 
-		public Job(IParseController parseController) {
+		public Job(IDocument doc, long stamp, IList patch) {
 			super("updating editor");
-			this.parseController = parseController;
+			this.doc = doc;
+			this.stamp = stamp;
+			this.patch = patch;
 		}
 		
 		@Override
 		public IStatus runInUIThread(IProgressMonitor monitor) {
-			IDocument doc = parseController.getDocument();
+			if (((IDocumentExtension4) doc).getModificationStamp() != stamp) {
+				return Status.CANCEL_STATUS;
+			}
+			
 			IWorkbenchWindow activeWindow = PlatformUI.getWorkbench().getActiveWorkbenchWindow();
 			if (activeWindow != null) {
 				IWorkbenchPage activePage = activeWindow.getActivePage();
 				if (activePage != null) {
 					IEditorPart activeEditor = activePage.getActiveEditor();
 					if (activeEditor != null && activeEditor instanceof UniversalEditor) {
-						
-						IFunction func = TermLanguageRegistry.getInstance().getLiveUpdater(parseController.getLanguage());
-						if (func == null) {
-							return Status.CANCEL_STATUS;
-						}
-						IConstructor pt = (IConstructor) parseController.getCurrentAst();
-						if (pt == null) {
-							return Status.CANCEL_STATUS;
-						}
-
-						IList patch =  func.call(pt);
-
-						if (patch.isEmpty()) {
-							return Status.OK_STATUS;
-						}
-						
 				        DocumentRewriteSession session = ((IDocumentExtension4)doc).startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED_SMALL);
 				        try {
 				        	int offset = 0;
@@ -96,16 +93,59 @@ public class EditorUpdater implements IEditorService {
 		
 	}
 
+	/**
+	 * Runs the live updater on the calling (parser) thread, against the current parse
+	 * tree, and only applies the resulting patch on the UI thread. The parse controller
+	 * does not tell which document version the tree was parsed from, so the patch is
+	 * only computed if the tree still spans the whole document when the update starts,
+	 * and only applied if the document was not modified since then.
+	 */
 	@Override
 	public void update(IParseController parseController, IProgressMonitor monitor) {
+		IDocument doc = parseController.getDocument();
+		if (!(doc instanceof IDocumentExtension4)) {
+			return;
+		}
+		
+		long stamp = ((IDocumentExtension4) doc).getModificationStamp();
+		
+		IFunction func = TermLanguageRegistry.getInstance().getLiveUpdater(parseController.getLanguage());
+		if (func == null) {
+			return;
+		}
+		
+		IConstructor pt = (IConstructor) parseController.getCurrentAst();
+		if (pt == null || !spansDocument(pt, doc)) {
+			return;
+		}
+
 		try {
-			Job job = new Job(parseController);
-			job.schedule();
-			job.join();
-		} catch (InterruptedException e) {
-			Activator.getInstance().logException("live updater interrupted", e);
+			IList patch = func.call(pt);
+			
+			if (patch.isEmpty() || (monitor != null && monitor.isCanceled())) {
+				return;
+			}
+			
+			if (((IDocumentExtension4) doc).getModificationStamp() == stamp) {
+				new Job(doc, stamp, patch).schedule();
+			}
+		}
+		catch (RuntimeException e) {
+			Activator.getInstance().logException("live updater failed", e);
 		}
 	}
+	
+	/**
+	 * @return false if the tree was certainly parsed from an older version of the document
+	 */
+	private static boolean spansDocument(IConstructor pt, IDocument doc) {
+		if (!(pt instanceof ITree)) {
+			return true;
+		}
+		
+		ISourceLocation loc = TreeAdapter.getLocation((ITree) pt);
+		return loc == null || !loc.hasOffsetLength() || loc.getLength() == doc.getLength();
+	}
 
 
 
@@ -11,82 +11,302 @@
 *******************************************************************************/
 package org.rascalmpl.eclipse.terms;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotationModel;
 import org.rascalmpl.values.RascalValueFactory;
 import org.rascalmpl.values.ValueFactoryFactory;
 import org.rascalmpl.values.parsetrees.ITree;
 import org.rascalmpl.values.parsetrees.ProductionAdapter;
 import org.rascalmpl.values.parsetrees.TreeAdapter;
-import org.rascalmpl.values.parsetrees.visitors.TreeVisitor;
 
+import io.usethesource.impulse.parser.IParseController;
 import io.usethesource.impulse.services.base.FolderBase;
 import io.usethesource.vallang.IConstructor;
 import io.usethesource.vallang.ISourceLocation;
 import io.usethesource.vallang.IValue;
 import io.usethesource.vallang.IValueFactory;
+import io.usethesource.vallang.IWithKeywordParameters;
 
+/**
+ * Computes folding regions from the Foldable and Folded tags on productions, and from
+ * the foldable and folded keyword parameters that annotators put on trees.
+ *
+ * The fold kind of a production is computed once and then looked up by identity, since all
+ * trees produced by a parser share the production objects of its grammar. Between two parses
+ * the text of the document is compared, and subtrees of at most SEGMENT_SIZE characters that
+ * lie entirely outside of the edited region reuse the regions found for them the last time.
+ * Keyword parameters can change while the text does not, so subtrees that fold by them are
+ * always visited again.
+ */
 public class FoldingUpdater extends FolderBase {
+	private static final IValueFactory VF = ValueFactoryFactory.getValueFactory();
+	private static final IConstructor FOLDABLE_TAG = VF.constructor(RascalValueFactory.Attr_Tag, VF.node("Foldable"));
+	private static final IConstructor FOLDED_TAG = VF.constructor(RascalValueFactory.Attr_Tag, VF.node("Folded"));
+
+	private static final int NONE = 0;
+	private static final int FOLDABLE = 1;
+	private static final int FOLDED = 2;
+
+	/**
+	 * Subtrees larger than this are never cached as a whole, but split into their children.
+	 */
+	private static final int SEGMENT_SIZE = 4096;
+
+	/**
+	 * The production index is dropped when it grows beyond this, which only happens
+	 * after a number of grammar reloads in the same editor.
+	 */
+	private static final int MAX_PRODUCTIONS = 50_000;
+
+	private final Map<IConstructor, Integer> productionIndex = new IdentityHashMap<>();
+
+	private String previousText = null;
+	private Map<Long, Segment> previousSegments = Collections.emptyMap();
+
+	private String currentText = null;
+	private Map<Long, Segment> currentSegments = null;
+	private Segment currentSegment = null;
+
+	/**
+	 * The folding regions found in one subtree, relative to the start of that subtree.
+	 */
+	private static class Segment {
+		private final IConstructor production;
+		private final List<int[]> regions = new ArrayList<>(0);
+		private boolean keywordFolds = false;
+
+		public Segment(IConstructor production) {
+			this.production = production;
+		}
+	}
 
 	@Override
-	protected void sendVisitorToAST(
-			HashMap<Annotation, Position> newAnnotations,
-			List<Annotation> annotations, Object ast) {
-		if (ast instanceof ITree) {
-				((ITree) ast).accept(new TreeVisitor<RuntimeException>() {
-					public ITree visitTreeCycle(ITree arg)
-							 {
-						return null;
-					}
-					
-					@Override
-					public ITree visitTreeChar(ITree arg)  {
-						return null;
-					}
-					
-					@Override
-					public ITree visitTreeAppl(ITree arg)  {
-						IConstructor prod = TreeAdapter.getProduction(arg);
-						IValueFactory VF = ValueFactoryFactory.getValueFactory();
-						
-						if (ProductionAdapter.hasAttribute(prod, VF.constructor(RascalValueFactory.Attr_Tag, VF.node("Foldable")))) {
-							makeAnnotation(arg, false);	
-						}
-						else if (ProductionAdapter.hasAttribute(prod, VF.constructor(RascalValueFactory.Attr_Tag, VF.node("Folded")))) {
-							makeAnnotation(arg, true);	
-						}
-						else if (arg.asWithKeywordParameters().getParameter("foldable") != null) {
-							makeAnnotation(arg, false);
-						}
-						else if (arg.asWithKeywordParameters().getParameter("folded") != null) {
-							makeAnnotation(arg, true);
-						}
-						
-						if (!TreeAdapter.isLexical(arg)) {
-							for (IValue kid :  TreeAdapter.getASTArgs(arg)) {
-								kid.accept(this);
-							}
-						}
-						
-						return null;
-					}
-					
-					public ITree visitTreeAmb(ITree arg)  {
-						return null;
-					}
-				});
+	public synchronized void updateFoldingStructure(IParseController parseController, ProjectionAnnotationModel annotationModel) {
+		IDocument doc = parseController != null ? parseController.getDocument() : null;
+		currentText = doc != null ? doc.get() : null;
+		super.updateFoldingStructure(parseController, annotationModel);
+	}
+
+	@Override
+	protected void sendVisitorToAST(HashMap<Annotation, Position> newAnnotations, List<Annotation> annotations, Object ast) {
+		if (!(ast instanceof ITree)) {
+			return;
+		}
+
+		if (productionIndex.size() > MAX_PRODUCTIONS) {
+			productionIndex.clear();
+		}
+
+		ITree tree = (ITree) ast;
+		ISourceLocation loc = TreeAdapter.getLocation(tree);
+		if (currentText != null && (loc == null || loc.getLength() != currentText.length())) {
+			// the document has changed again since this tree was parsed
+			currentText = null;
+		}
+
+		currentSegments = new HashMap<>();
+		try {
+			visit(tree, damage(previousText, currentText));
+			previousSegments = currentText != null ? currentSegments : Collections.<Long, Segment>emptyMap();
+			previousText = currentText;
+		}
+		finally {
+			currentSegments = null;
+			currentSegment = null;
+		}
+	}
+
+	/**
+	 * @return the length of the common prefix, the length of the common suffix, the
+	 *         difference in length between the new and the old text and the length of the new
+	 *         text, or null if nothing can be reused.
+	 */
+	private static int[] damage(String oldText, String newText) {
+		if (oldText == null || newText == null) {
+			return null;
+		}
+
+		int oldLength = oldText.length();
+		int newLength = newText.length();
+		int max = Math.min(oldLength, newLength);
+
+		int prefix = 0;
+		while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) {
+			prefix++;
+		}
+
+		int suffix = 0;
+		while (suffix < max - prefix && oldText.charAt(oldLength - suffix - 1) == newText.charAt(newLength - suffix - 1)) {
+			suffix++;
+		}
+
+		return new int[] { prefix, suffix, newLength - oldLength, newLength };
+	}
+
+	private void visit(ITree tree, int[] damage) {
+		if (!TreeAdapter.isAppl(tree)) {
+			return;
+		}
+
+		ISourceLocation loc = TreeAdapter.getLocation(tree);
+
+		if (currentSegment == null && loc != null && loc.getLength() <= SEGMENT_SIZE) {
+			visitSegment(tree, loc, damage);
+			return;
+		}
+
+		int kind = foldKind(tree);
+		if (kind != NONE) {
+			makeAnnotation(tree, kind == FOLDED);
+		}
+
+		if (!TreeAdapter.isLexical(tree)) {
+			for (IValue kid : TreeAdapter.getASTArgs(tree)) {
+				visit((ITree) kid, damage);
+			}
+		}
+	}
+
+	private void visitSegment(ITree tree, ISourceLocation loc, int[] damage) {
+		IConstructor prod = TreeAdapter.getProduction(tree);
+		int offset = loc.getOffset();
+		int length = loc.getLength();
+		Segment old = previousSegments.get(key(previousOffset(offset, length, damage), length));
+
+		if (old != null && old.production == prod && !old.keywordFolds && !hasKeywordFolds(tree)) {
+			for (int[] region : old.regions) {
+				super.makeAnnotation(VF.sourceLocation(loc, offset + region[0], region[1]), region[2] == FOLDED);
+			}
+			currentSegments.put(key(offset, length), old);
+			return;
+		}
+
+		Segment segment = new Segment(prod);
+		currentSegment = segment;
+		try {
+			visit(tree, damage);
+		}
+		finally {
+			currentSegment = null;
 		}
+
+		for (int[] region : segment.regions) {
+			region[0] -= offset;
+		}
+		currentSegments.put(key(offset, length), segment);
 	}
-	
+
+	/**
+	 * @return true if a tree that is visited for folding has a foldable or folded keyword parameter
+	 */
+	private static boolean hasKeywordFolds(ITree tree) {
+		if (!TreeAdapter.isAppl(tree)) {
+			return false;
+		}
+
+		if (keywordFoldKind(tree) != NONE) {
+			return true;
+		}
+
+		if (!TreeAdapter.isLexical(tree)) {
+			for (IValue kid : TreeAdapter.getASTArgs(tree)) {
+				if (hasKeywordFolds((ITree) kid)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return the offset a subtree of the new text had in the old text, or -1 if it overlaps with the edit.
+	 */
+	private static int previousOffset(int offset, int length, int[] damage) {
+		if (damage == null) {
+			return -1;
+		}
+
+		int prefix = damage[0];
+		int suffix = damage[1];
+		int delta = damage[2];
+		int newLength = damage[3];
+
+		if (offset + length <= prefix) {
+			return offset;
+		}
+		else if (offset >= newLength - suffix) {
+			return offset - delta;
+		}
+
+		return -1;
+	}
+
+	private static Long key(int offset, int length) {
+		return ((long) offset << 32) | (length & 0xffffffffL);
+	}
+
+	private int foldKind(ITree tree) {
+		IConstructor prod = TreeAdapter.getProduction(tree);
+		Integer kind = productionIndex.get(prod);
+
+		if (kind == null) {
+			if (ProductionAdapter.hasAttribute(prod, FOLDABLE_TAG)) {
+				kind = FOLDABLE;
+			}
+			else if (ProductionAdapter.hasAttribute(prod, FOLDED_TAG)) {
+				kind = FOLDED;
+			}
+			else {
+				kind = NONE;
+			}
+			productionIndex.put(prod, kind);
+		}
+
+		if (kind != NONE) {
+			return kind;
+		}
+
+		kind = keywordFoldKind(tree);
+		if (kind != NONE && currentSegment != null) {
+			currentSegment.keywordFolds = true;
+		}
+		return kind;
+	}
+
+	private static int keywordFoldKind(ITree tree) {
+		if (tree.mayHaveKeywordParameters()) {
+			IWithKeywordParameters<? extends IConstructor> params = tree.asWithKeywordParameters();
+
+			if (params.getParameter("foldable") != null) {
+				return FOLDABLE;
+			}
+			else if (params.getParameter("folded") != null) {
+				return FOLDED;
+			}
+		}
+
+		return NONE;
+	}
+
 	@Override
 	public void makeAnnotation(Object arg, boolean folded) {
 		ITree c = (ITree) arg;
 		ISourceLocation l = TreeAdapter.getLocation(c);
-		
+
 		if (l != null && l.getBeginLine() != l.getEndLine()) {
+			if (currentSegment != null) {
+				currentSegment.regions.add(new int[] { l.getOffset(), l.getLength(), folded ? FOLDED : FOLDABLE });
+			}
 			super.makeAnnotation(arg, folded);
 		}
 	}
@@ -13,15 +13,17 @@
 package org.rascalmpl.eclipse.util;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.usethesource.impulse.runtime.RuntimePlugin;
 
@@ -38,25 +40,43 @@ public enum ThreadSafeImpulseConsole {
 	public abstract Writer getWriter();
 	
 
+	/**
+	 * Collects the characters of all writers in one bounded buffer, which a single thread
+	 * encodes and copies to the console in batches. Writers block when the buffer is full,
+	 * so a runaway writer is slowed down to the speed of the console instead of filling the heap.
+	 */
 	private static final class SyncWriter extends Writer {
-		private static final int FLUSH_EVERY_WRITES = 100;
+		private static final int CAPACITY = 64 * 1024;
+		private static final long COALESCE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
 
-		private final Queue<ByteBuffer> queuedWrites = new ConcurrentLinkedDeque<>();
-		private final Semaphore flush = new Semaphore(0, true);
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition notEmpty = lock.newCondition();
+		private final Condition notFull = lock.newCondition();
+		
+		private char[] pending = new char[CAPACITY];
+		private char[] draining = new char[CAPACITY];
+		private int count = 0;
+		private boolean flushRequested = false;
 		private final Thread syncWrites;
 
 		public SyncWriter() {
 			syncWrites = new Thread(() -> {
 				final PrintStream target = RuntimePlugin.getInstance().getConsoleStream();
+				final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				final ByteBuffer bytes = ByteBuffer.allocate((int) (CAPACITY * encoder.maxBytesPerChar()));
+				
 				while (true) {
 					try {
-						flush.tryAcquire(FLUSH_EVERY_WRITES, 20, TimeUnit.MILLISECONDS);
-						flush.drainPermits(); // avoid multiple flushes
-						ByteBuffer toWrite;
-						while ((toWrite = queuedWrites.poll()) != null) {
-							target.write(toWrite.array(), toWrite.arrayOffset(), toWrite.limit());
-						}
-
+						int length = takeBatch();
+						
+						CharBuffer chars = CharBuffer.wrap(draining, 0, length);
+						encoder.reset();
+						bytes.clear();
+						encoder.encode(chars, bytes, true);
+						encoder.flush(bytes);
+						target.write(bytes.array(), bytes.arrayOffset(), bytes.position());
 					} catch (InterruptedException ie) {
 						target.close();
 						return;
@@ -67,32 +87,132 @@ public enum ThreadSafeImpulseConsole {
 			syncWrites.setDaemon(true);
 			syncWrites.start();
 		}
-
 		
+		/**
+		 * Waits for something to write and then for a short while for more to coalesce with it, 
+		 * unless a flush was requested or the buffer is getting full. The characters are then 
+		 * swapped into the draining buffer.
+		 * @return the number of characters in the draining buffer
+		 */
+		private int takeBatch() throws InterruptedException {
+			lock.lockInterruptibly();
+			try {
+				while (count == 0) {
+					flushRequested = false;
+					notEmpty.await();
+				}
+				
+				long wait = COALESCE_NANOS;
+				while (!flushRequested && count < CAPACITY / 2 && wait > 0) {
+					wait = notEmpty.awaitNanos(wait);
+				}
+				flushRequested = false;
+				
+				int length = count;
+				char last = pending[length - 1];
+				
+				char[] tmp = draining;
+				draining = pending;
+				pending = tmp;
+				count = 0;
+				
+				if (Character.isHighSurrogate(last) && length > 1) {
+					// do not split a surrogate pair over two batches
+					length--;
+					pending[count++] = last;
+				}
+				
+				notFull.signalAll();
+				return length;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
 
 		@Override
 		public void write(char[] cbuf, int off, int len) throws IOException {
-			write(CharBuffer.wrap(cbuf, off, len));
+			lock.lock();
+			try {
+				while (len > 0) {
+					int room = awaitRoom();
+					int chunk = Math.min(room, len);
+					System.arraycopy(cbuf, off, pending, count, chunk);
+					count += chunk;
+					off += chunk;
+					len -= chunk;
+					notEmpty.signal();
+				}
+			}
+			finally {
+				lock.unlock();
+			}
 		}
 
 		@Override
 		public void write(String str, int off, int len) throws IOException {
-			write(CharBuffer.wrap(str, off, len));
+			lock.lock();
+			try {
+				while (len > 0) {
+					int room = awaitRoom();
+					int chunk = Math.min(room, len);
+					str.getChars(off, off + chunk, pending, count);
+					count += chunk;
+					off += chunk;
+					len -= chunk;
+					notEmpty.signal();
+				}
+			}
+			finally {
+				lock.unlock();
+			}
 		}
 
 		@Override
 		public void write(int c) throws IOException {
-			write(CharBuffer.wrap(new char[] {(char)c }));
+			lock.lock();
+			try {
+				awaitRoom();
+				pending[count++] = (char) c;
+				notEmpty.signal();
+			}
+			finally {
+				lock.unlock();
+			}
 		}
-
-		private void write(CharBuffer chars) {
-			queuedWrites.add(StandardCharsets.UTF_8.encode(chars));
-			flush.release();
+		
+		/**
+		 * Blocks the writer until the console thread has made room in the buffer.
+		 * @return the number of characters that can be written
+		 */
+		private int awaitRoom() throws IOException {
+			try {
+				while (count == CAPACITY) {
+					if (!syncWrites.isAlive()) {
+						throw new IOException("console writer is closed");
+					}
+					flushRequested = true;
+					notEmpty.signal();
+					notFull.await();
+				}
+				return CAPACITY - count;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
 		}
 		
 		@Override
 		public void flush() throws IOException {
-			flush.release(FLUSH_EVERY_WRITES);
+			lock.lock();
+			try {
+				flushRequested = true;
+				notEmpty.signal();
+			}
+			finally {
+				lock.unlock();
+			}
 		}
 
 		@Override
@@ -102,4 +222,3 @@ public enum ThreadSafeImpulseConsole {
 		
 	}
 }
-
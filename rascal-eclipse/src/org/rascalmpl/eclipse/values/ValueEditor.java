@@ -4,37 +4,171 @@ import java.io.IOException;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IMenuManager;
+import org.eclipse.jface.action.Separator;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorSite;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.editors.text.TextEditor;
+import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.views.values.ValueEditorInput;
 import org.rascalmpl.uri.ProjectURIResolver;
 import org.rascalmpl.uri.URIEditorInput;
 import org.rascalmpl.uri.URIStorage;
+import org.rascalmpl.values.ValueFactoryFactory;
 
 import io.usethesource.vallang.ISourceLocation;
 
+/**
+ * Shows the text of a value. Values with a text larger than {@link ValueEditorInput#PAGE_SIZE}
+ * are shown one read-only page at a time, with actions in the context menu to go to the other pages.
+ * Values stored in files are read and rendered in a job, while the editor shows a placeholder.
+ */
 public class ValueEditor extends TextEditor  {
+    public static final String ID = "rascal_eclipse.values.editor";
+
     @Override
     public void init(IEditorSite site, IEditorInput input) throws PartInitException {
+        if (input instanceof ValueEditorInput) {
+            super.init(site, input);
+            return;
+        }
+
+        ISourceLocation loc;
+
+        if (input instanceof URIEditorInput) {
+            try {
+                loc = ((URIStorage) ((URIEditorInput) input).getStorage()).getLocation();
+            } catch (CoreException e) {
+                throw new PartInitException("could not initialize editor", e);
+            }
+        }
+        else {
+            IResource tmp = input.getAdapter(IResource.class);
+
+            if (tmp == null) {
+                throw new PartInitException("Value editor can not open " + input);
+            }
+
+            loc = ProjectURIResolver.constructProjectURI(tmp.getFullPath());
+        }
+
+        super.init(site, new ValueEditorInput(input.getName(), ValueFactoryFactory.getValueFactory().string("Loading ..."), true, 2));
+        load(loc);
+    }
+
+    /**
+     * Reads and renders the value in a file in the background, and then shows it.
+     */
+    private void load(ISourceLocation loc) {
+        Job job = new Job("Loading value") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                final ValueEditorInput input;
+
+                try {
+                    input = paged(new ValueEditorInput(loc, true, 2));
+                }
+                catch (IOException e) {
+                    Activator.log("could not load value from " + loc, e);
+                    return Status.OK_STATUS;
+                }
+
+                Display.getDefault().asyncExec(() -> {
+                    if (getSourceViewer() != null) {
+                        setInput(input);
+                    }
+                    else {
+                        // closed in the mean time
+                        input.disconnect();
+                    }
+                });
+
+                return Status.OK_STATUS;
+            }
+        };
+        job.schedule();
+    }
+
+    private static ValueEditorInput paged(ValueEditorInput input) throws IOException {
+        return input.isPaged() ? input.getPage(0) : input;
+    }
+
+    @Override
+    protected void doSetInput(IEditorInput input) throws CoreException {
+        IEditorInput old = getEditorInput();
+
+        if (input instanceof ValueEditorInput) {
+            ((ValueEditorInput) input).connect();
+        }
+
         try {
-            if (input instanceof URIEditorInput) {
-                super.init(site, new ValueEditorInput((URIStorage) ((URIEditorInput) input).getStorage(), true, 2)); 
+            super.doSetInput(input);
+        }
+        catch (CoreException | RuntimeException e) {
+            if (input instanceof ValueEditorInput) {
+                ((ValueEditorInput) input).disconnect();
             }
-            else {
-                IResource tmp = input.getAdapter(IResource.class);
-                
-                if (tmp != null) {
-                    ISourceLocation uri = ProjectURIResolver.constructProjectURI(tmp.getFullPath());
-                    super.init(site, new ValueEditorInput(uri, true, 2));
-                    return;
+            throw e;
+        }
+
+        if (old instanceof ValueEditorInput) {
+            ((ValueEditorInput) old).disconnect();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        IEditorInput input = getEditorInput();
+        super.dispose();
+
+        if (input instanceof ValueEditorInput) {
+            ((ValueEditorInput) input).disconnect();
+        }
+    }
+
+    @Override
+    protected void editorContextMenuAboutToShow(IMenuManager menu) {
+        super.editorContextMenuAboutToShow(menu);
+
+        if (getEditorInput() instanceof ValueEditorInput) {
+            ValueEditorInput input = (ValueEditorInput) getEditorInput();
+            int page = input.getPageNumber();
+
+            if (page >= 0) {
+                try {
+                    int count = input.getPageCount();
+                    menu.add(new Separator());
+                    menu.add(new PageAction("Previous page", input, page - 1, count));
+                    menu.add(new PageAction("Next page", input, page + 1, count));
+                }
+                catch (IOException e) {
+                    Activator.log("could not render value", e);
                 }
-                
-                throw new IOException("Value editor can not open " + input);
             }
-        } catch (IOException | CoreException e) {
-            throw new PartInitException("could not initialize editor", e);
+        }
+    }
+
+    private class PageAction extends Action {
+        private final ValueEditorInput input;
+        private final int page;
+
+        public PageAction(String text, ValueEditorInput input, int page, int count) {
+            super(text);
+            this.input = input;
+            this.page = page;
+            setEnabled(page >= 0 && page < count);
+        }
+
+        @Override
+        public void run() {
+            setInput(input.getPage(page));
         }
     }
 }
@@ -1,19 +1,30 @@
 package org.rascalmpl.eclipse.views.values;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
+import org.eclipse.core.resources.IEncodedStorage;
 import org.eclipse.core.resources.IStorage;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.ui.IPersistableElement;
 import org.eclipse.ui.IStorageEditorInput;
+import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.uri.URIResolverRegistry;
 import org.rascalmpl.uri.URIStorage;
 import org.rascalmpl.values.RascalValueFactory;
@@ -24,65 +35,168 @@ import io.usethesource.vallang.IValue;
 import io.usethesource.vallang.io.StandardTextWriter;
 import io.usethesource.vallang.io.binary.stream.IValueInputStream;
 
+/**
+ * The text of a value, for the text editor. The value is written to a temporary file once, such that
+ * it is never held in memory as a whole next to the document of the editor. If the text is larger
+ * than PAGE_SIZE bytes, the editor should open the read-only pages of the input (see {@link #isPaged()}
+ * and {@link #getPage(int)}) instead of the whole text.
+ */
 public class ValueEditorInput implements IStorageEditorInput {
+	/* approximate number of bytes of text on a page */
+	public static final int PAGE_SIZE = 2 * 1024 * 1024;
+	/* pages preferably end at a newline at most this many bytes after a multiple of PAGE_SIZE */
+	private static final int MAX_LINE_SEARCH = 64 * 1024;
+
 	private final IValue value;
 	private final String label;
 	private final boolean indent;
 	private final int tabsize;
+	private final Rendering rendering;
+	/* the page of the text shown by this input, or -1 for the whole text */
+	private final int page;
 
 	public ValueEditorInput(URIStorage loc, boolean indent, int tabsize) throws IOException, CoreException {
         this.value = parse(loc);
         this.label = loc.toString();
         this.indent = indent;
         this.tabsize = tabsize;
+        this.rendering = new Rendering();
+        this.page = -1;
     }
-	
+
     public ValueEditorInput(ISourceLocation loc, boolean indent, int tabsize) throws IOException {
         this.value = parse(loc);
         this.label = loc.toString();
         this.indent = indent;
         this.tabsize = tabsize;
+        this.rendering = new Rendering();
+        this.page = -1;
     }
-	
+
+	/**
+	 * Files in the local file system are decoded from a memory mapped channel, such that the
+	 * encoded bytes are not copied to the heap, while others are decoded from a stream.
+	 */
 	private IValue parse(ISourceLocation loc) throws IOException {
-        try (IValueInputStream s = new IValueInputStream(URIResolverRegistry.getInstance().getInputStream(loc), ValueFactoryFactory.getValueFactory(), () -> RascalValueFactory.uptr)) {
+	    URIResolverRegistry reg = URIResolverRegistry.getInstance();
+
+	    if (reg.supportsReadableFileChannel(loc)) {
+	        FileChannel channel = null;
+
+	        try {
+	            channel = reg.getReadableFileChannel(loc);
+	        }
+	        catch (IOException e) {
+	            // not in the local file system after all
+	        }
+
+	        if (channel != null) {
+	            try (IValueInputStream s = new IValueInputStream(channel, ValueFactoryFactory.getValueFactory(), () -> RascalValueFactory.uptr)) {
+	                return s.read();
+	            }
+	        }
+	    }
+
+        try (IValueInputStream s = new IValueInputStream(reg.getInputStream(loc), ValueFactoryFactory.getValueFactory(), () -> RascalValueFactory.uptr)) {
             return s.read();
-        } 
+        }
     }
-	
+
 	private IValue parse(URIStorage loc) throws IOException, CoreException {
-	    try (IValueInputStream s = new IValueInputStream(loc.getContents(), ValueFactoryFactory.getValueFactory(),  () -> RascalValueFactory.uptr)) {
-            return s.read();
-        } 
+	    return parse(loc.getLocation());
     }
-	
+
 	public ValueEditorInput(IValue value, boolean indent, int tabsize) {
-		this.value = value;
-		this.label = value.getType().toString();
-		this.indent = indent;
-		this.tabsize = tabsize;
+		this(value.getType().toString(), value, indent, tabsize);
 	}
-	
+
 	public ValueEditorInput(String label, IValue value, boolean indent, int tabsize) {
 		this.value = value;
 		this.label = label;
 		this.indent = indent;
 		this.tabsize = tabsize;
+		this.rendering = new Rendering();
+		this.page = -1;
 	}
-	
-	
+
+	private ValueEditorInput(ValueEditorInput whole, int page) {
+		this.value = whole.value;
+		this.label = whole.label;
+		this.indent = whole.indent;
+		this.tabsize = whole.tabsize;
+		this.rendering = whole.rendering;
+		this.page = page;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj != null && obj.getClass() == ValueEditorInput.class) {
-			return value.equals(((ValueEditorInput) obj).value);
+			ValueEditorInput other = (ValueEditorInput) obj;
+			return page == other.page && value.equals(other.value);
 		}
 		return false;
 	}
-	
+
+	@Override
+	public int hashCode() {
+		return value.hashCode() * 31 + page;
+	}
+
 	public IValue getValue() {
 		return value;
 	}
-	
+
+	/**
+	 * Writes the text of the value to a temporary file, if that did not happen yet. This
+	 * may take a while for large values, so it is better not done on the UI thread.
+	 */
+	public void render() throws IOException {
+		rendering.render();
+	}
+
+	/**
+	 * Declares that an editor shows this input, such that the text of the value is kept.
+	 */
+	public void connect() {
+		rendering.connect();
+	}
+
+	/**
+	 * Declares that an editor does not show this input anymore. When no editor shows any page
+	 * of the value anymore, its temporary file is deleted.
+	 */
+	public void disconnect() {
+		rendering.disconnect();
+	}
+
+	/**
+	 * @return true if the text of the value is too large to show at once, renders the value if necessary
+	 */
+	public boolean isPaged() throws IOException {
+		return rendering.render().length > 2;
+	}
+
+	/**
+	 * @return the number of pages of the text, renders the value if necessary
+	 */
+	public int getPageCount() throws IOException {
+		return rendering.render().length - 1;
+	}
+
+	/**
+	 * @return the page shown by this input, or -1 if it shows the whole text
+	 */
+	public int getPageNumber() {
+		return page;
+	}
+
+	/**
+	 * @return an input for a single read-only page of the text of the value
+	 */
+	public ValueEditorInput getPage(int page) {
+		return new ValueEditorInput(this, page);
+	}
+
 	public boolean exists() {
 		return value != null;
 	}
@@ -92,6 +206,14 @@ public class ValueEditorInput implements IStorageEditorInput {
 	}
 
 	public String getName() {
+		if (page >= 0) {
+			try {
+				return label + " (page " + (page + 1) + " of " + getPageCount() + ")";
+			}
+			catch (IOException e) {
+				return label + " (page " + (page + 1) + ")";
+			}
+		}
 		return label;
 	}
 
@@ -115,30 +237,73 @@ public class ValueEditorInput implements IStorageEditorInput {
 	}
 
 	public IStorage getStorage() throws CoreException {
-		return new IStorage() {
+		return new IEncodedStorage() {
 
 			public InputStream getContents() throws CoreException {
-				ByteArrayOutputStream out = new ByteArrayOutputStream(10_000);
-				try (OutputStreamWriter outWriter = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
-					StandardTextWriter w = new StandardTextWriter(indent, tabsize);
-					w.write(value, outWriter);
-					outWriter.flush();
-					return new ByteArrayInputStream(out.toByteArray());
+				try {
+					long[] pages = rendering.render();
+					long start = page >= 0 ? pages[page] : 0;
+					long end = page >= 0 ? pages[page + 1] : pages[pages.length - 1];
+
+					FileChannel channel = FileChannel.open(rendering.file, StandardOpenOption.READ).position(start);
+					return new FilterInputStream(Channels.newInputStream(channel)) {
+						private long remaining = end - start;
+
+						@Override
+						public int read() throws IOException {
+							if (remaining <= 0) {
+								return -1;
+							}
+							int b = super.read();
+							if (b != -1) {
+								remaining--;
+							}
+							return b;
+						}
+
+						@Override
+						public int read(byte[] b, int off, int len) throws IOException {
+							if (remaining <= 0) {
+								return -1;
+							}
+							int n = super.read(b, off, (int) Math.min(len, remaining));
+							if (n > 0) {
+								remaining -= n;
+							}
+							return n;
+						}
+
+						@Override
+						public long skip(long n) throws IOException {
+							long skipped = super.skip(Math.min(n, remaining));
+							remaining -= skipped;
+							return skipped;
+						}
+
+						@Override
+						public int available() throws IOException {
+							return (int) Math.min(Integer.MAX_VALUE, Math.max(0, remaining));
+						}
+					};
 				} catch (IOException e) {
-					throw new CoreException(Status.OK_STATUS);
+					throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "could not render value", e));
 				}
 			}
 
+			public String getCharset() throws CoreException {
+				return StandardCharsets.UTF_8.name();
+			}
+
 			public IPath getFullPath() {
 				return null;
 			}
 
 			public String getName() {
-				return value.getType().toString();
+				return ValueEditorInput.this.getName();
 			}
 
 			public boolean isReadOnly() {
-				return false;
+				return page >= 0;
 			}
 
 			@SuppressWarnings("unchecked")
@@ -147,4 +312,101 @@ public class ValueEditorInput implements IStorageEditorInput {
 			}
 		};
 	}
+
+	/**
+	 * The text of the value in a temporary file, shared by the pages of an input. The file is
+	 * deleted when the last editor that shows one of the pages is closed.
+	 */
+	private class Rendering {
+		private Path file;
+		/* the offsets at which pages start, followed by the size of the file */
+		private long[] pages;
+		/* the number of editors that show a page */
+		private int users = 0;
+
+		synchronized void connect() {
+			users++;
+		}
+
+		synchronized void disconnect() {
+			if (--users > 0) {
+				return;
+			}
+
+			users = 0;
+
+			if (file != null) {
+				try {
+					Files.deleteIfExists(file);
+				}
+				catch (IOException e) {
+					Activator.log("could not delete rendered value", e);
+				}
+				file = null;
+				pages = null;
+			}
+		}
+
+		synchronized long[] render() throws IOException {
+			if (pages != null && Files.exists(file)) {
+				return pages;
+			}
+
+			file = Files.createTempFile("rascal-value", ".txt");
+			file.toFile().deleteOnExit();
+
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 64 * 1024)) {
+				new StandardTextWriter(indent, tabsize).write(value, out);
+			}
+
+			pages = paginate();
+			return pages;
+		}
+
+		/**
+		 * Divides the file in pages of about PAGE_SIZE bytes, preferably at the end of a line
+		 * and otherwise at least at the start of a character.
+		 */
+		private long[] paginate() throws IOException {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				long size = channel.size();
+				int count = (int) Math.max(1, (size + PAGE_SIZE - 1) / PAGE_SIZE);
+				long[] result = new long[count + 1];
+				ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE_SEARCH);
+				int pages = 1;
+
+				for (long offset = PAGE_SIZE; offset < size; ) {
+					buffer.clear();
+					channel.read(buffer, offset);
+					buffer.flip();
+
+					long boundary = -1;
+					for (int i = 0; i < buffer.limit() && boundary == -1; i++) {
+						if (buffer.get(i) == '\n') {
+							boundary = offset + i + 1;
+						}
+					}
+					for (int i = 0; i < buffer.limit() && boundary == -1; i++) {
+						if ((buffer.get(i) & 0xC0) != 0x80) {
+							boundary = offset + i;
+						}
+					}
+
+					if (boundary == -1 || boundary >= size) {
+						break;
+					}
+
+					if (pages == result.length - 1) {
+						result = Arrays.copyOf(result, result.length + 1);
+					}
+					result[pages++] = boundary;
+					offset = boundary + PAGE_SIZE;
+				}
+
+				result = Arrays.copyOf(result, pages + 1);
+				result[pages] = size;
+				return result;
+			}
+		}
+	}
 }
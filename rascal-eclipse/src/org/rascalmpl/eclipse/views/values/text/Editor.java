@@ -1,12 +1,21 @@
 package org.rascalmpl.eclipse.views.values.text;
 
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.PlatformUI;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.values.ValueEditor;
 import org.rascalmpl.eclipse.views.values.ValueEditorInput;
 
 import io.usethesource.vallang.IValue;
@@ -15,7 +24,7 @@ public class Editor {
 	public static void edit(final IValue v, boolean indent, int tabsize) {
 		IWorkbench wb = PlatformUI.getWorkbench();
 		IWorkbenchWindow win = wb.getActiveWorkbenchWindow();
-		final IEditorInput input = new ValueEditorInput(v, indent, tabsize);
+		final ValueEditorInput input = new ValueEditorInput(v, indent, tabsize);
 
 		if (win == null && wb.getWorkbenchWindowCount() != 0) {
 			win = wb.getWorkbenchWindows()[0];
@@ -24,15 +33,39 @@ public class Editor {
 		if (win != null) {
 			final IWorkbenchPage page = win.getActivePage();
 			if (page != null) {
-				Display.getDefault().asyncExec(new Runnable() {
-					public void run() {
+				// the text of a large value takes a while to write, so not on the UI thread
+				Job job = new Job("Rendering value") {
+					@Override
+					protected IStatus run(IProgressMonitor monitor) {
+						final IEditorInput toOpen;
+						
 						try {
-							page.openEditor(input, "org.eclipse.ui.DefaultTextEditor");
-						} catch (PartInitException e) {
-							// TODO: log exception somewhere
+							toOpen = input.isPaged() ? input.getPage(0) : input;
+						} catch (IOException e) {
+							Activator.log("could not render value", e);
+							return Status.OK_STATUS;
 						}
+						
+						Display.getDefault().asyncExec(new Runnable() {
+							public void run() {
+								IEditorPart editor = null;
+								try {
+									editor = page.openEditor(toOpen, ValueEditor.ID);
+								} catch (PartInitException e) {
+									Activator.log("failed to open value editor", e);
+								}
+								
+								if (editor == null || editor.getEditorInput() != toOpen) {
+									// an editor showed the same value already, so the new rendering is not used
+									input.disconnect();
+								}
+							}
+						});
+						
+						return Status.OK_STATUS;
 					}
-				});
+				};
+				job.schedule();
 			}
 		}
 	}
@@ -1,11 +1,14 @@
 package org.rascalmpl.eclipse.views.values.tree;
 
+import java.util.Iterator;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.viewers.ILabelProvider;
 import org.eclipse.jface.viewers.ILabelProviderListener;
-import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
@@ -20,7 +23,6 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.EditorPart;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.views.values.ValueEditorInput;
-import org.rascalmpl.values.ValueFactoryFactory;
 
 import io.usethesource.vallang.IBool;
 import io.usethesource.vallang.IConstructor;
@@ -41,8 +43,9 @@ import io.usethesource.vallang.visitors.IValueVisitor;
 
 public class Editor extends EditorPart {
     public static final String EditorId = "org.rascalmpl.eclipse.views.values.tree.editor";
+    /* collections with more elements than this are divided into ranges */
+    private static final int PARTITION_SIZE = 100;
     private TreeViewer treeViewer;
-    private static final Object[] empty = new Object[0];
 
     public Editor() {
     }
@@ -121,140 +124,256 @@ public class Editor extends EditorPart {
     @Override
     public void createPartControl(Composite parent) {
         parent.setLayout(new FillLayout());
-        treeViewer = new TreeViewer(parent);
+        treeViewer = new TreeViewer(parent, SWT.VIRTUAL | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER);
+        treeViewer.setUseHashlookup(true);
         treeViewer.setContentProvider(new ValueContentProvider());
         treeViewer.setLabelProvider(new ValueLabelProvider());
 
         IEditorInput input = getEditorInput();
-        treeViewer.setInput(((ValueEditorInput) input).getValue());
+        ValueElement root = new ValueElement(null, 0, ((ValueEditorInput) input).getValue());
+        treeViewer.setInput(root);
+        treeViewer.setChildCount(root, root.getChildCount());
     }
 
     @Override
     public void setFocus() {
     }
 
-    private class ValueContentProvider implements ITreeContentProvider {
+    /**
+     * Provides the children of an element by index, for the visible items only. Large collections
+     * are divided into ranges of at most PARTITION_SIZE elements, or ranges of ranges, and so on.
+     */
+    private class ValueContentProvider implements ILazyTreeContentProvider {
         public void dispose() {
         }
 
         public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
         }
 
-        public Object[] getChildren(Object parentElement) {
-            return ((IValue) parentElement).accept(new IValueVisitor<Object[], RuntimeException>() {
+        public void updateElement(Object parent, int index) {
+            Element child = ((Element) parent).getChild(index);
+            treeViewer.replace(parent, index, child);
+            treeViewer.setChildCount(child, child.getChildCount());
+        }
 
-                @Override
-                public Object[] visitBoolean(IBool boolValue) {
-                    return empty; 
-                }
+        public void updateChildCount(Object element, int currentChildCount) {
+            int count = ((Element) element).getChildCount();
 
-                @Override
-                public Object[] visitConstructor(IConstructor o)
-                {
-                    Object[] children = new Object[o.arity()];
-                    int i = 0;
-                    for (IValue child : o) {
-                        children[i++] = child;
-                    }
-                    return children;
-                }
+            if (count != currentChildCount) {
+                treeViewer.setChildCount(element, count);
+            }
+        }
 
-                @Override
-                public Object[] visitExternal(IExternalValue externalValue) {
-                    return empty;
-                }
+        public Object getParent(Object element) {
+            return ((Element) element).parent;
+        }
+    }
 
-                @Override
-                public Object[] visitInteger(IInteger o) {
-                    return empty;
-                }
+    /**
+     * An item of the tree. Elements are identified by their parent and their index in it,
+     * such that the viewer recognizes an element that is created again for the same item.
+     */
+    private static abstract class Element {
+        protected final Element parent;
+        protected final int index;
+        private final int hash;
+
+        public Element(Element parent, int index) {
+            this.parent = parent;
+            this.index = index;
+            this.hash = parent == null ? System.identityHashCode(this) : parent.hash * 31 + index;
+        }
 
-                public Object[] visitRational(IRational o) {
-                    return empty;
-                }
+        public abstract int getChildCount();
 
-                @Override
-                public Object[] visitList(IList o)  {
-                    Object[] children = new Object[o.length()];
-                    int i = 0;
-                    for (IValue child : o) {
-                        children[i++] = child;
-                    }
-                    return children;
-                }
+        public abstract Element getChild(int i);
 
-                @Override
-                public Object[] visitMap(IMap o)  {
-                    Object[] children = new Object[o.size()];
-                    int i = 0;
-                    for (IValue child : o) {
-                        children[i++] = ValueFactoryFactory.getValueFactory().tuple(child, o.get(child));
-                    }
-                    return children;
-                }
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass() || parent == null) {
+                return false;
+            }
 
-                @Override
-                public Object[] visitNode(INode o)  {
-                    Object[] children = new Object[o.arity()];
-                    int i = 0;
-                    for (IValue child : o) {
-                        children[i++] = child;
-                    }
-                    return children;
-                }
+            Element other = (Element) obj;
+            return index == other.index && parent.equals(other.parent);
+        }
 
-                @Override
-                public Object[] visitReal(IReal o)  {
-                    return empty;
-                }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 
-                @Override
-                public Object[] visitSet(ISet o)  {
-                    Object[] children = new Object[o.size()];
-                    int i = 0;
-                    for (IValue child : o) {
-                        children[i++] = child;
-                    }
-                    return children;
-                }
+    /**
+     * Computes the size of the ranges a sequence of the given length is divided into: 1 if
+     * the elements fit in a single level, and otherwise the smallest power of PARTITION_SIZE
+     * that leaves at most PARTITION_SIZE ranges.
+     */
+    private static int chunkSize(int length) {
+        int chunk = 1;
+        while ((long) length > (long) chunk * PARTITION_SIZE) {
+            chunk *= PARTITION_SIZE;
+        }
+        return chunk;
+    }
 
-                @Override
-                public Object[] visitSourceLocation(ISourceLocation o) {
-                    return empty;
-                }
+    private static int childCount(int length) {
+        int chunk = chunkSize(length);
+        return chunk == 1 ? length : (length + chunk - 1) / chunk;
+    }
 
-                @Override
-                public Object[] visitString(IString o)  {
-                    return empty;
-                }
+    private static Element child(Element parent, ValueElement collection, Cursor cursor, int offset, int length, int i) {
+        int chunk = chunkSize(length);
 
-                @Override
-                public Object[] visitTuple(ITuple o)  {
-                    Object[] children = new Object[o.arity()];
-                    int i = 0;
-                    for (IValue child : o) {
-                        children[i++] = child;
-                    }
-                    return children;
-                }
+        if (chunk == 1) {
+            return collection.getElement(parent, i, offset + i, cursor);
+        }
 
-                @Override
-                public Object[] visitDateTime(IDateTime o) {
-                    return empty;
-                }
-            });
+        int from = i * chunk;
+        return new RangeElement(parent, i, collection, offset + from, Math.min(chunk, length - from));
+    }
+
+    /**
+     * Where the last visible element of a set or map was, since these can only be iterated. Every
+     * element that lists elements has its own, such that expanding one range does not make
+     * another range iterate from the start again.
+     */
+    private static class Cursor {
+        private Iterator<IValue> iterator = null;
+        private int position = 0;
+
+        /**
+         * @return the i-th element of a set, or key of a map, in iteration order
+         */
+        @SuppressWarnings("unchecked")
+        synchronized IValue elementAt(IValue collection, int i) {
+            if (iterator == null || i < position) {
+                iterator = ((Iterable<IValue>) collection).iterator();
+                position = 0;
+            }
+
+            while (position < i) {
+                iterator.next();
+                position++;
+            }
+
+            position++;
+            return iterator.next();
         }
+    }
 
-        public Object getParent(Object element) {
-            return null;
+    private static class ValueElement extends Element {
+        private final IValue value;
+        private final Cursor cursor = new Cursor();
+
+        public ValueElement(Element parent, int index, IValue value) {
+            super(parent, index);
+            this.value = value;
+        }
+
+        private int size() {
+            if (value instanceof IList) {
+                return ((IList) value).length();
+            }
+            else if (value instanceof ISet) {
+                return ((ISet) value).size();
+            }
+            else if (value instanceof IMap) {
+                return ((IMap) value).size();
+            }
+            else if (value instanceof INode) {
+                return ((INode) value).arity();
+            }
+            else if (value instanceof ITuple) {
+                return ((ITuple) value).arity();
+            }
+            return 0;
         }
 
-        public boolean hasChildren(Object element) {
-            return getChildren(element).length != 0;
+        @Override
+        public int getChildCount() {
+            return childCount(size());
         }
 
-        public Object[] getElements(Object inputElement) {
-            return getChildren(inputElement);
+        @Override
+        public Element getChild(int i) {
+            return child(this, this, cursor, 0, size(), i);
+        }
+
+        /**
+         * @return the element at the given position of this value, as a child of the given parent
+         */
+        public Element getElement(Element parent, int index, int position, Cursor cursor) {
+            if (value instanceof IList) {
+                return new ValueElement(parent, index, ((IList) value).get(position));
+            }
+            else if (value instanceof ISet) {
+                return new ValueElement(parent, index, cursor.elementAt(value, position));
+            }
+            else if (value instanceof IMap) {
+                IValue key = cursor.elementAt(value, position);
+                return new EntryElement(parent, index, key, ((IMap) value).get(key));
+            }
+            else if (value instanceof INode) {
+                return new ValueElement(parent, index, ((INode) value).get(position));
+            }
+            else {
+                return new ValueElement(parent, index, ((ITuple) value).get(position));
+            }
+        }
+    }
+
+    /**
+     * A key of a map with its value, which are its two children.
+     */
+    private static class EntryElement extends Element {
+        private final IValue key;
+        private final IValue value;
+
+        public EntryElement(Element parent, int index, IValue key, IValue value) {
+            super(parent, index);
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int getChildCount() {
+            return 2;
+        }
+
+        @Override
+        public Element getChild(int i) {
+            return new ValueElement(this, i, i == 0 ? key : value);
+        }
+    }
+
+    /**
+     * A consecutive range of the elements of a large collection.
+     */
+    private static class RangeElement extends Element {
+        private final ValueElement collection;
+        private final Cursor cursor = new Cursor();
+        private final int offset;
+        private final int length;
+
+        public RangeElement(Element parent, int index, ValueElement collection, int offset, int length) {
+            super(parent, index);
+            this.collection = collection;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int getChildCount() {
+            return childCount(length);
+        }
+
+        @Override
+        public Element getChild(int i) {
+            return child(this, collection, cursor, offset, length, i);
         }
     }
 
@@ -277,7 +396,21 @@ public class Editor extends EditorPart {
         }
 
         public String getText(Object element) {
-            IValue value = (IValue) element;
+            if (element instanceof RangeElement) {
+                RangeElement range = (RangeElement) element;
+                return "[" + range.offset + ".." + (range.offset + range.length - 1) + "]";
+            }
+            else if (element instanceof EntryElement) {
+                EntryElement entry = (EntryElement) element;
+                return getText(entry.key) + " : " + getText(entry.value);
+            }
+            else if (element instanceof ValueElement) {
+                return getText(((ValueElement) element).value);
+            }
+            return "";
+        }
+
+        private String getText(IValue value) {
             return value.accept(new IValueVisitor<String, RuntimeException>() {
 
                 @Override
@@ -0,0 +1,209 @@
+package org.rascalmpl.uri;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Caches what ProjectURIResolver knows about existing workspace resources: whether they are files
+ * or folders, their time stamp and their charset. Entries are dropped when a resource delta reports
+ * a change to the resource (or to one of its ancestors, for removed or closed containers and for
+ * charset changes), and when the resolver itself changes a resource, since the delta of a change
+ * made inside a workspace operation only arrives after that operation ends.
+ *
+ * That a resource does not exist is not cached, because it may appear without the resolver knowing
+ * before the delta arrives, for instance when a file written with java.io is refreshed.
+ *
+ * Every invalidation increments a generation, which is read before a resource is looked up. An entry
+ * that was computed before an invalidation but stored after it is removed again, so it cannot
+ * outlive the change that made it stale.
+ */
+class ProjectStatCache implements IResourceChangeListener {
+	private static final int MAX_ENTRIES = 200_000;
+	private static ProjectStatCache instance;
+
+	private final ConcurrentHashMap<IPath, Stat> stats = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+	private final IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+
+	public static synchronized ProjectStatCache getInstance() {
+		if (instance == null) {
+			instance = new ProjectStatCache();
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(instance,
+				IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+		}
+		return instance;
+	}
+
+	private ProjectStatCache() { }
+
+	/**
+	 * The cached facts about a single resource.
+	 */
+	static final class Stat {
+		static final Stat MISSING = new Stat(null, false, 0L);
+
+		final IResource resource;
+		final boolean directory;
+		final long lastModified;
+		private volatile String charset;
+
+		private Stat(IResource resource, boolean directory, long lastModified) {
+			this.resource = resource;
+			this.directory = directory;
+			this.lastModified = lastModified;
+		}
+
+		boolean exists() {
+			return resource != null;
+		}
+
+		boolean isFile() {
+			return resource != null && !directory;
+		}
+
+		boolean isDirectory() {
+			return resource != null && directory;
+		}
+
+		/**
+		 * @return the name of the charset of the file, or null if it is not a file
+		 */
+		String getCharset() throws CoreException {
+			if (!isFile()) {
+				return null;
+			}
+
+			String result = charset;
+			if (result == null) {
+				result = charset = ((IFile) resource).getCharset();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @param path a workspace absolute path
+	 */
+	public Stat get(IPath path) {
+		Stat stat = stats.get(path);
+
+		if (stat == null) {
+			long before = generation.get();
+			stat = compute(root.findMember(path));
+
+			if (stat.exists()) {
+				put(path, stat, before);
+			}
+		}
+
+		return stat;
+	}
+
+	/**
+	 * Caches the attributes of a resource that was just obtained from the workspace, for instance
+	 * while listing its parent, such that a subsequent get does not look it up again.
+	 */
+	public Stat put(IResource resource) {
+		long before = generation.get();
+		Stat stat = compute(resource);
+		put(resource.getFullPath(), stat, before);
+		return stat;
+	}
+
+	/**
+	 * @param before the generation that was read before the stat was computed
+	 */
+	private void put(IPath path, Stat stat, long before) {
+		if (stats.size() >= MAX_ENTRIES) {
+			stats.clear();
+		}
+		stats.put(path, stat);
+
+		if (generation.get() != before) {
+			// it may have been invalidated before it was stored
+			stats.remove(path, stat);
+		}
+	}
+
+	private static Stat compute(IResource resource) {
+		// closed projects are treated as if they do not exist
+		if (resource == null || !resource.isAccessible()) {
+			return Stat.MISSING;
+		}
+
+		return new Stat(resource, resource instanceof IContainer, resource.getLocalTimeStamp());
+	}
+
+	/**
+	 * Forgets what is known about a resource, its parent (whose time stamp and list of members
+	 * may change with it) and, if it is a container, all of its descendants.
+	 */
+	public void invalidate(IResource resource) {
+		IPath path = resource.getFullPath();
+		invalidate(path, resource.getType() != IResource.FILE);
+		stats.remove(path.removeLastSegments(1));
+	}
+
+	private void invalidate(IPath path, boolean container) {
+		generation.incrementAndGet();
+		stats.remove(path);
+
+		if (container) {
+			stats.keySet().removeIf(path::isPrefixOf);
+		}
+	}
+
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		if (stats.isEmpty()) {
+			// a lookup in progress may still store what it found before this change
+			generation.incrementAndGet();
+			return;
+		}
+
+		switch (event.getType()) {
+			case IResourceChangeEvent.PRE_CLOSE:
+			case IResourceChangeEvent.PRE_DELETE:
+				if (event.getResource() != null) {
+					invalidate(event.getResource().getFullPath(), true);
+				}
+				return;
+			case IResourceChangeEvent.POST_CHANGE:
+				IResourceDelta delta = event.getDelta();
+				if (delta == null) {
+					return;
+				}
+
+				try {
+					delta.accept(d -> {
+						IPath path = d.getFullPath();
+
+						// the charset of a container is inherited by the files in it
+						if (d.getKind() == IResourceDelta.REMOVED || (d.getFlags() & (IResourceDelta.OPEN | IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO | IResourceDelta.ENCODING)) != 0) {
+							invalidate(path, d.getResource().getType() != IResource.FILE);
+							return false;
+						}
+
+						invalidate(path, false);
+						return true;
+					});
+				}
+				catch (CoreException e) {
+					generation.incrementAndGet();
+					stats.clear();
+				}
+				return;
+		}
+	}
+}
@@ -12,8 +12,13 @@
 *******************************************************************************/
 package org.rascalmpl.uri;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -21,7 +26,13 @@ import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -37,14 +48,39 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
+import org.rascalmpl.uri.ProjectStatCache.Stat;
 import org.rascalmpl.uri.classloaders.IClassloaderLocationResolver;
 import org.rascalmpl.values.ValueFactoryFactory;
 
 import io.usethesource.vallang.ISourceLocation;
 
 public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResourceResolver, IClassloaderLocationResolver {
+	private final ProjectStatCache stats = ProjectStatCache.getInstance();
 	
-	
+	/**
+	 * What is known about an entry of a folder without looking it up again.
+	 */
+	public static final class Attributes {
+	    private final boolean directory;
+	    private final long lastModified;
+	    
+	    private Attributes(boolean directory, long lastModified) {
+	        this.directory = directory;
+	        this.lastModified = lastModified;
+	    }
+	    
+	    public boolean isDirectory() {
+	        return directory;
+	    }
+	    
+	    public boolean isFile() {
+	        return !directory;
+	    }
+	    
+	    public long lastModified() {
+	        return lastModified;
+	    }
+	}
 
     public static ISourceLocation constructProjectURI(IProject project, IPath path){
 		return constructProjectURI(project.getName(), path);
@@ -67,8 +103,15 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 	
 	@Override
 	public InputStream getInputStream(ISourceLocation uri) throws IOException {
+		IFile file = resolveFile(uri);
+		java.nio.file.Path local = localPath(file);
+		
+		if (local != null) {
+			return Files.newInputStream(local);
+		}
+		
 		try {
-			return resolveFile(uri).getContents(true);
+			return file.getContents(true);
 		} catch (CoreException e) {
 			Throwable cause = e.getCause();
 			
@@ -80,6 +123,57 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 		}
 	}
 
+	/**
+	 * Every file can be read through a channel, see {@link #getReadableFileChannel(ISourceLocation)}.
+	 */
+	@Override
+	public boolean supportsReadableFileChannel() {
+		return true;
+	}
+	
+	/**
+	 * Opens the file in the local file system under the same conditions as {@link #getInputStream(ISourceLocation)}
+	 * reads it directly. Files that have to be read through the workspace, because they are virtual, linked or
+	 * out of sync, are copied to a temporary file which is deleted when the channel is closed.
+	 */
+	@Override
+	public FileChannel getReadableFileChannel(ISourceLocation uri) throws IOException {
+		IFile file = resolveFile(uri);
+		java.nio.file.Path local = localPath(file);
+		
+		if (local != null) {
+			return FileChannel.open(local, StandardOpenOption.READ);
+		}
+		
+		java.nio.file.Path copy = Files.createTempFile("rascal-project", "-" + file.getName());
+		try (InputStream in = getInputStream(uri)) {
+			Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+			return FileChannel.open(copy, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+		}
+		catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(copy);
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return the path of the file in the local file system if it may be read directly, which is
+	 *         when it is a plain file of the workspace that is in sync with the file system,
+	 *         or null if its contents have to be read through the workspace.
+	 */
+	private static java.nio.file.Path localPath(IFile file) {
+		if (file.isVirtual() || file.isLinked(IResource.CHECK_ANCESTORS) || !file.isSynchronized(IResource.DEPTH_ZERO)) {
+			return null;
+		}
+		
+		IPath location = file.getLocation();
+		if (location == null) {
+			return null;
+		}
+		
+		return location.toFile().toPath();
+	}
+
 	public IFile resolveFile(ISourceLocation uri) throws IOException, MalformedURLException {
 	    if ("".equals(uri.getAuthority())) {
             throw new IOException("location needs a project name as authority" + uri);
@@ -115,11 +209,28 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 		}
 	}
 
-	private IResource resolve(ISourceLocation uri) throws IOException, MalformedURLException {
+	/**
+	 * @return the workspace absolute path of a project location
+	 */
+	private static IPath fullPath(ISourceLocation uri) throws IOException {
 	    if ("".equals(uri.getAuthority())) {
 	        throw new IOException("location needs a project name as authority" + uri);
 	    }
 	    
+	    return new Path("/" + uri.getAuthority()).append(uri.getPath());
+	}
+	
+	private Stat stat(ISourceLocation uri) throws IOException {
+	    return stats.get(fullPath(uri));
+	}
+
+	private IResource resolve(ISourceLocation uri) throws IOException, MalformedURLException {
+		Stat stat = stat(uri);
+		
+		if (stat.exists()) {
+		    return stat.resource;
+		}
+		
 		IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(uri.getAuthority());
 		
 		if (project == null || !project.exists()) {
@@ -130,17 +241,6 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 			throw new IOException("project " + uri.getAuthority() + " is closed.");
 		}
 		
-		if (uri.getPath().isEmpty() || uri.getPath().equals("/")) {
-		    return project;
-		}
-		if(isDirectory(uri)){
-			return project.getFolder(uri.getPath());
-		}
-		
-		if(isFile(uri)){
-			return project.getFile(uri.getPath());
-		}
-		
 		throw new IOException(uri+" refers to a resource that does not exist.");
 	}
 	
@@ -148,37 +248,95 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
     private static final boolean forceRegardLessOutOfSync = true;
 
 	public OutputStream getOutputStream(final ISourceLocation uri, boolean append) throws IOException {
-	    final IFile file = resolveFile(uri);
+	    return new WorkspaceFileOutputStream(resolveFile(uri), append);
+	}
+	
+	/**
+	 * Collects everything that is written and stores it in the workspace file with a single
+	 * create, setContents or appendContents on close, so that a large write causes a
+	 * single resource delta instead of one per chunk. Small contents are kept in memory,
+	 * larger contents are spilled to a temporary file.
+	 */
+	private static class WorkspaceFileOutputStream extends OutputStream {
+	    private static final int IN_MEMORY_LIMIT = 1024 * 1024;
+	    
+	    private final IFile file;
+	    private final boolean append;
+	    private ByteArrayOutputStream memory = new ByteArrayOutputStream(8 * 1024);
+	    private File spill = null;
+	    private OutputStream spillStream = null;
+	    private boolean closed = false;
 
-	    try {
-	        // clear or create the file if needed
-    	    if (!file.exists()) {
-                file.create(new ByteArrayInputStream(new byte[0]), forceRegardLessOutOfSync, new NullProgressMonitor());
-            }
-            else if (!append) {
-                file.setContents(new ByteArrayInputStream(new byte[0]), keepHistory, forceRegardLessOutOfSync, new NullProgressMonitor());
-            }
+	    public WorkspaceFileOutputStream(IFile file, boolean append) {
+	        this.file = file;
+	        this.append = append;
 	    }
-	    catch (CoreException e) {
-	        throw new IOException(e);
+
+	    @Override
+	    public void write(int b) throws IOException {
+	        target(1).write(b);
 	    }
-	    
-	    return new OutputStream() {
-            
-	        @Override
-	        public void write(byte[] b, int off, int len) throws IOException {
-	            try {
-                    file.appendContents(new ByteArrayInputStream(b, off, len), keepHistory, forceRegardLessOutOfSync, new NullProgressMonitor());
-	            } catch (CoreException e) {
-	                throw new IOException(e);
-	            }
+
+	    @Override
+	    public void write(byte[] b, int off, int len) throws IOException {
+	        target(len).write(b, off, len);
+	    }
+
+	    private OutputStream target(int len) throws IOException {
+	        if (closed) {
+	            throw new IOException("stream is closed: " + file.getFullPath());
 	        }
 	        
-            @Override
-            public void write(int b) throws IOException {
-                throw new UnsupportedOperationException("always wrap this outputstream with a buffered outputstream");
-            }
-        };
+	        if (spillStream == null && memory.size() + len > IN_MEMORY_LIMIT) {
+	            spill = File.createTempFile("rascal-project-", ".tmp");
+	            spillStream = new BufferedOutputStream(new FileOutputStream(spill), 64 * 1024);
+	            memory.writeTo(spillStream);
+	            memory = null;
+	        }
+	        
+	        return spillStream != null ? spillStream : memory;
+	    }
+
+	    @Override
+	    public void flush() throws IOException {
+	        // the contents are only committed to the workspace on close
+	    }
+
+	    @Override
+	    public void close() throws IOException {
+	        if (closed) {
+	            return;
+	        }
+	        closed = true;
+
+	        try {
+	            if (spillStream != null) {
+	                spillStream.close();
+	            }
+	            
+	            try (InputStream contents = spill != null ? new FileInputStream(spill) : new ByteArrayInputStream(memory.toByteArray())) {
+	                if (!file.exists()) {
+	                    file.create(contents, forceRegardLessOutOfSync, new NullProgressMonitor());
+	                }
+	                else if (append) {
+	                    file.appendContents(contents, keepHistory, forceRegardLessOutOfSync, new NullProgressMonitor());
+	                }
+	                else {
+	                    file.setContents(contents, keepHistory, forceRegardLessOutOfSync, new NullProgressMonitor());
+	                }
+	            }
+	        }
+	        catch (CoreException e) {
+	            throw new IOException(e);
+	        }
+	        finally {
+	            ProjectStatCache.getInstance().invalidate(file);
+	            memory = null;
+	            if (spill != null) {
+	                spill.delete();
+	            }
+	        }
+	    }
 	}
 
 	public String scheme() {
@@ -188,7 +346,7 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 	@Override
 	public boolean exists(ISourceLocation uri) {
 		try {
-			return resolve(uri).exists();
+			return stat(uri).exists();
 		} catch (IllegalStateException | IOException | AssertionFailedException e) {
 			return false;
 		}
@@ -197,7 +355,7 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 	@Override
 	public boolean isDirectory(ISourceLocation uri) {
 		try {
-			return resolveFolder(uri).exists();
+			return stat(uri).isDirectory();
 		} catch (IllegalStateException | IOException | AssertionFailedException e) {
 			return false;
 		}
@@ -205,7 +363,7 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 
 	public boolean isFile(ISourceLocation uri) {
 		try {
-			return resolveFile(uri).exists();
+			return stat(uri).isFile();
 		} catch (IllegalStateException | IOException | AssertionFailedException e) {
 			return false;
 		}
@@ -214,7 +372,7 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 	@Override
 	public long lastModified(ISourceLocation uri) {
 		try {
-			return resolve(uri).getLocalTimeStamp();
+			return stat(uri).lastModified;
 		} catch (IllegalStateException | IOException | AssertionFailedException e) {
 			return 0L;
 		}
@@ -222,23 +380,36 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 	
 	@Override
 	public void setLastModified(ISourceLocation uri, long timestamp) throws IOException {
+	    IResource resource = resolve(uri);
 	    try {
-            resolve(uri).setLocalTimeStamp(timestamp);
+            resource.setLocalTimeStamp(timestamp);
         } catch (CoreException e) {
             throw new IOException(e.getMessage());
+        } finally {
+            stats.invalidate(resource);
         }
 	}
 
 	@Override
 	public String[] list(ISourceLocation uri) throws IOException {
+		return listWithAttributes(uri).keySet().toArray(new String[0]);
+	}
+	
+	/**
+	 * Lists a folder together with the kind and time stamp of each entry, in a single pass
+	 * over the workspace. The attributes are also cached, so calling exists, isDirectory or
+	 * lastModified on the entries afterwards does not look them up again either.
+	 */
+	public Map<String, Attributes> listWithAttributes(ISourceLocation uri) throws IOException {
 		try {
 			IContainer folder = resolveFolder(uri);
 			
 			IResource[] members = folder.members();
-			String[] result = new String[members.length];
+			Map<String, Attributes> result = new LinkedHashMap<>(members.length * 2);
 			
-			for (int i = 0; i < members.length; i++) {
-				result[i] = members[i].getName();
+			for (IResource member : members) {
+				Stat stat = stats.put(member);
+				result.put(member.getName(), new Attributes(stat.isDirectory(), stat.lastModified));
 			}
 			
 			return result;
@@ -249,10 +420,13 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 
 	@Override
 	public void remove(ISourceLocation uri) throws IOException {
+		IResource resource = resolve(uri);
 		try {
-			resolve(uri).delete(true, new NullProgressMonitor());
+			resource.delete(true, new NullProgressMonitor());
 		} catch (CoreException e) {
 			throw new IOException("could not remove file", e);
+		} finally {
+			stats.invalidate(resource);
 		}
 	}
 
@@ -274,6 +448,8 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 				return;
 			} catch (CoreException e) {
 				throw new IOException(e.getMessage(), e);
+			} finally {
+				stats.invalidate(resolved);
 			}
 		}
 
@@ -287,6 +463,16 @@ public class ProjectURIResolver implements ISourceLocationInputOutput, IURIResou
 
 	@Override
 	public Charset getCharset(ISourceLocation uri) throws IOException {
+		Stat stat = stat(uri);
+		if (stat.isFile()) {
+			try {
+				String charsetName = stat.getCharset();
+				return charsetName != null ? Charset.forName(charsetName) : null;
+			} catch (CoreException e) {
+				return null;
+			}
+		}
+		
 		IFile file;
 		try {
 			file = resolveFile(uri);